@@ -1,13 +1,22 @@
 package gui;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.time.LocalDate;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import service_implementation.BookService;
 import service_implementation.MemberService;
 import service_implementation.BorrowService;
+import service_implementation.CirculationLoop;
 import service_implementation.FileIOService;
 import model.Book;
 import model.Member;
@@ -16,6 +25,7 @@ public class homepage {
     private final BookService bookService;
     private final MemberService memberService;
     private final BorrowService borrowService;
+    private final CirculationLoop circulation; // desk borrow/return/reserve run on its single writer thread
     private final FileIOService fileIO;
 
     private DefaultListModel<String> listModel;
@@ -23,13 +33,24 @@ public class homepage {
     private JButton borrowButton;
     private JButton reserveButton;
 
+    // Autocomplete under the search box
+    private static final int SUGGEST_DELAY_MS = 150;
+    private static final int SUGGEST_LIMIT = 8;
+    private final JPopupMenu suggestPopup = new JPopupMenu();
+    private final DefaultListModel<Book> suggestModel = new DefaultListModel<>();
+    private final JList<Book> suggestList = new JList<>(suggestModel);
+    private Timer suggestTimer;
+    private boolean fillingSearchField; // set while a chosen suggestion is written into the field
+
     private static final String BACKGROUND_PATH = "/GUI_BG.jpeg";
     private static final String ADMIN_ICON_PATH = "C://Users//Student//Downloads//admin_icon.png";
 
-    public homepage(BookService bookService, MemberService memberService, BorrowService borrowService, FileIOService fileIO) {
+    public homepage(BookService bookService, MemberService memberService, BorrowService borrowService,
+            CirculationLoop circulation, FileIOService fileIO) {
         this.bookService = bookService;
         this.memberService = memberService;
         this.borrowService = borrowService;
+        this.circulation = circulation;
         this.fileIO = fileIO;
         createAndShow();
     }
@@ -45,8 +66,9 @@ public class homepage {
             BookService bookService = new BookService(books);
             MemberService memberService = new MemberService(members, books);
             BorrowService borrowService = new BorrowService(members, books);
+            CirculationLoop circulation = new CirculationLoop(borrowService, memberService);
 
-            new homepage(bookService, memberService, borrowService, fileIO);
+            new homepage(bookService, memberService, borrowService, circulation, fileIO);
         });
     }
 
@@ -83,7 +105,7 @@ public class homepage {
         adminButton.setFocusPainted(false);
         adminButton.addActionListener(e -> {
             frame.dispose();
-            SwingUtilities.invokeLater(() -> new loginn(bookService, memberService, borrowService, fileIO));
+            SwingUtilities.invokeLater(() -> new loginn(bookService, memberService, borrowService, circulation, fileIO));
         });
 
         JPanel adminPanel = new JPanel(new BorderLayout());
@@ -227,18 +249,117 @@ public class homepage {
 
         // Action listeners
         searchButton.addActionListener(e -> doSearch(searchField));
-        searchField.addActionListener(e -> doSearch(searchField));
+        searchField.addActionListener(e -> {
+            suggestPopup.setVisible(false);
+            doSearch(searchField);
+        });
+        installAutocomplete(searchField);
 
         resultList.addListSelectionListener(e -> updateReserveButtonState());
         borrowButton.addActionListener(e -> handleBorrow(frame));
         reserveButton.addActionListener(e -> handleReserve(frame));
-        exitButton.addActionListener(e -> System.exit(0));
+        exitButton.addActionListener(e -> {
+            fileIO.flushPendingSaves();
+            System.exit(0);
+        });
         mostBorrowedButton.addActionListener(e -> showMostBorrowedBook(frame));
 
         reserveButton.setEnabled(false);
         frame.setVisible(true);
     }
 
+    /**
+     * Shows the most borrowed books whose title or author starts with what was typed.
+     * The lookup waits until typing pauses for SUGGEST_DELAY_MS (the timer restarts on
+     * every keystroke), so fast typing costs one trie lookup, not one per character.
+     * Down/Up move through the list, Enter or a click picks a book and searches for it.
+     */
+    private void installAutocomplete(JTextField searchField) {
+        suggestList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean selected, boolean focus) {
+                Book b = (Book) value;
+                String text = b.getTitle() + " — " + b.getAuthor() + " (" + b.getBorrowCount() + " borrows)";
+                return super.getListCellRendererComponent(list, text, index, selected, focus);
+            }
+        });
+        suggestList.setFocusable(false);
+        suggestPopup.setFocusable(false);
+        suggestPopup.add(new JScrollPane(suggestList));
+
+        suggestTimer = new Timer(SUGGEST_DELAY_MS, e -> showSuggestions(searchField));
+        suggestTimer.setRepeats(false);
+
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { changed(); }
+            public void removeUpdate(DocumentEvent e) { changed(); }
+            public void changedUpdate(DocumentEvent e) { changed(); }
+
+            private void changed() {
+                if (!fillingSearchField) suggestTimer.restart();
+            }
+        });
+
+        searchField.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!suggestPopup.isVisible()) return;
+                int index = suggestList.getSelectedIndex();
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        suggestList.setSelectedIndex(Math.min(index + 1, suggestModel.size() - 1));
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_UP:
+                        suggestList.setSelectedIndex(Math.max(index - 1, 0));
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        if (index >= 0) {
+                            chooseSuggestion(searchField, suggestList.getSelectedValue());
+                            e.consume();
+                        }
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        suggestPopup.setVisible(false);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+
+        suggestList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                Book chosen = suggestList.getSelectedValue();
+                if (chosen != null) chooseSuggestion(searchField, chosen);
+            }
+        });
+    }
+
+    private void showSuggestions(JTextField searchField) {
+        List<Book> suggestions = bookService.suggest(searchField.getText(), SUGGEST_LIMIT);
+        suggestModel.clear();
+        for (Book b : suggestions) suggestModel.addElement(b);
+        if (suggestions.isEmpty() || !searchField.isShowing()) {
+            suggestPopup.setVisible(false);
+            return;
+        }
+        suggestList.setVisibleRowCount(suggestions.size());
+        suggestPopup.setPopupSize(new Dimension(Math.max(searchField.getWidth(), 360),
+                suggestList.getPreferredScrollableViewportSize().height + 6));
+        suggestPopup.show(searchField, 0, searchField.getHeight());
+    }
+
+    private void chooseSuggestion(JTextField searchField, Book chosen) {
+        suggestPopup.setVisible(false);
+        fillingSearchField = true;
+        searchField.setText(chosen.getTitle());
+        fillingSearchField = false;
+        doSearch(searchField);
+    }
+
     private void doSearch(JTextField searchField) {
         String query = searchField.getText().trim().toLowerCase();
         listModel.clear();
@@ -248,7 +369,12 @@ public class homepage {
             return;
         }
 
-        List<Book> found = bookService.searchBooksByTitle(query);
+        // Substring match on titles first (so "war" still finds "Star Wars" and "Warriors"),
+        // then whole-word matches on author/category from the index; typos (e.g. "orwel")
+        // fall back to the fuzzy search
+        Set<Book> found = new LinkedHashSet<>(bookService.searchBooksByTitle(query));
+        found.addAll(bookService.searchBooks(query));
+        if (found.isEmpty()) found.addAll(bookService.searchBooksFuzzy(query));
         for (Book b : found) {
             String status = b.isAvailable() ? "Available" : "Borrowed";
             listModel.addElement(b.getTitle() + " — " + b.getAuthor() + " (ID: " + b.getId() + ") | Status: " + status);
@@ -302,26 +428,28 @@ public class homepage {
             member = new Member("M" + System.currentTimeMillis(), name.trim());
             boolean added = memberService.addMember(member);
             if (added) {
-                fileIO.saveMembers("members.txt", memberService.getAllMembers());
+                fileIO.saveMembersLater("members.txt", memberService.getAllMembers());
                 JOptionPane.showMessageDialog(parent, "New member added successfully.");
             }
         }
 
-        boolean success = borrowService.borrowBook(member.getId(), bookId, LocalDate.now());
-        if (success) {
+        // Runs on the circulation loop, in order with the other desks; the dialog follows on the EDT
+        Member borrower = member;
+        circulation.submit(() -> {
+            boolean ok = borrowService.borrowBook(borrower.getId(), bookId, LocalDate.now());
             // ✅ IMPORTANT: update the member's borrowed books
-            member.borrowBook(bookId);
-
-            // Save updated files
-            fileIO.saveMembers("members.txt", memberService.getAllMembers());
-            fileIO.saveBooksAlphabetically("books.txt", bookService.getAllBooks());
-            fileIO.saveBorrowRecords("borrow_records.txt", borrowService.getAllBorrowRecords());
-
-            JOptionPane.showMessageDialog(parent, "Book successfully borrowed by " + member.getName() + " on " + LocalDate.now() + "!");
-            doSearch(new JTextField(book.getTitle())); // refresh
-        } else {
-            JOptionPane.showMessageDialog(parent, "Borrow failed. Try again.", "Error", JOptionPane.ERROR_MESSAGE);
-        }
+            if (ok) borrower.borrowBook(bookId);
+            return ok;
+        }).whenComplete((success, error) -> SwingUtilities.invokeLater(() -> {
+            if (Boolean.TRUE.equals(success)) {
+                // No file saves here: BorrowService journaled the borrow, and the .txt files
+                // catch up at its next checkpoint
+                JOptionPane.showMessageDialog(parent, "Book successfully borrowed by " + borrower.getName() + " on " + LocalDate.now() + "!");
+                doSearch(new JTextField(book.getTitle())); // refresh
+            } else {
+                JOptionPane.showMessageDialog(parent, "Borrow failed. Try again.", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }));
     }
 
     private void handleReserve(JFrame parent) {
@@ -351,19 +479,20 @@ public class homepage {
             member = new Member("M" + System.currentTimeMillis(), name.trim());
             boolean added = memberService.addMember(member);
             if (added) {
-                fileIO.saveMembers("members.txt", memberService.getAllMembers());
+                fileIO.saveMembersLater("members.txt", memberService.getAllMembers());
                 JOptionPane.showMessageDialog(parent, "New member added successfully.");
             }
         }
 
-        boolean ok = memberService.addReservation(member.getId(), bookId);
-        if (ok) {
-            fileIO.saveMembers("members.txt", memberService.getAllMembers());
-            JOptionPane.showMessageDialog(parent, "You have been added to the reservation queue for this book!");
-            doSearch(new JTextField(book.getTitle()));
-        } else {
-            JOptionPane.showMessageDialog(parent, "Failed to add reservation (maybe duplicate).", "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        circulation.addReservation(member.getId(), bookId).whenComplete((ok, error) -> SwingUtilities.invokeLater(() -> {
+            if (Boolean.TRUE.equals(ok)) {
+                fileIO.saveMembersLater("members.txt", memberService.getAllMembers());
+                JOptionPane.showMessageDialog(parent, "You have been added to the reservation queue for this book!");
+                doSearch(new JTextField(book.getTitle()));
+            } else {
+                JOptionPane.showMessageDialog(parent, "Failed to add reservation (maybe duplicate).", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }));
     }
 
     private Member findMemberByName(String name) {
@@ -396,12 +525,8 @@ public class homepage {
             return;
         }
 
-        // ✅ Use your custom MaxHeap implementation
-        utils.MaxHeap_Imp<Book> heap = new utils.MaxHeap_Imp<>();
-        heap.buildHeap(allBooks);
-
-        // Get the book with highest borrow count
-        Book mostBorrowed = heap.getMax();
+        // ✅ Read the root of BookService's live popularity heap (no rebuild)
+        Book mostBorrowed = bookService.getMostBorrowedBooks(1).get(0);
 
         // Display the result
         String message = "📚 MOST BORROWED BOOK 📚\n\n" +
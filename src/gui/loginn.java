@@ -8,22 +8,26 @@ import java.net.URL;
 import service_implementation.BookService;
 import service_implementation.MemberService;
 import service_implementation.BorrowService;
+import service_implementation.CirculationLoop;
 import service_implementation.FileIOService;
 
 public class loginn {
     private final BookService bookService;
     private final MemberService memberService;
     private final BorrowService borrowService;
+    private final CirculationLoop circulation; // desk borrow/return/reserve run on its single writer thread
     private final FileIOService fileIO;
 
     // Path relative to classpath (src/)
     private static final String BACKGROUND_RESOURCE = "/GUI_BG.jpeg";
 
     // Constructor used when opening login from homepage (with services passed)
-    public loginn(BookService bookService, MemberService memberService, BorrowService borrowService, FileIOService fileIO) {
+    public loginn(BookService bookService, MemberService memberService, BorrowService borrowService,
+            CirculationLoop circulation, FileIOService fileIO) {
         this.bookService = bookService;
         this.memberService = memberService;
         this.borrowService = borrowService;
+        this.circulation = circulation;
         this.fileIO = fileIO;
         createLoginScreen();
     }
@@ -35,7 +39,7 @@ public class loginn {
             BookService bs = new BookService();
             MemberService ms = new MemberService(java.util.Collections.emptyList(), java.util.Collections.emptyList());
             BorrowService br = new BorrowService(java.util.Collections.emptyList(), java.util.Collections.emptyList());
-            new loginn(bs, ms, br, fio);
+            new loginn(bs, ms, br, new CirculationLoop(br, ms), fio);
         });
     }
 
@@ -129,7 +133,7 @@ public class loginn {
 
             if (username.equals("admin") && password.equals("1234")) {
                 frame.dispose();
-                SwingUtilities.invokeLater(() -> new menu(bookService, memberService, borrowService, fileIO));
+                SwingUtilities.invokeLater(() -> new menu(bookService, memberService, borrowService, circulation, fileIO));
             } else {
                 JOptionPane.showMessageDialog(frame,
                         "Invalid Username or Password.",
@@ -7,9 +7,11 @@ import java.awt.*;
 import java.time.LocalDate;
 import java.util.List;
 
+import service_implementation.BookQuery;
 import service_implementation.BookService;
 import service_implementation.MemberService;
 import service_implementation.BorrowService;
+import service_implementation.CirculationLoop;
 import service_implementation.FileIOService;
 import model.Book;
 import model.Member;
@@ -18,6 +20,7 @@ public class menu {
     private final BookService bookService;
     private final MemberService memberService;
     private final BorrowService borrowService;
+    private final CirculationLoop circulation; // desk borrow/return/reserve run on its single writer thread
     private final FileIOService fileIO;
 
     private JFrame frame;
@@ -25,10 +28,12 @@ public class menu {
     private JPanel contentPanel;
     private String currentView = "BOOKS"; // default
 
-    public menu(BookService bookService, MemberService memberService, BorrowService borrowService, FileIOService fileIO) {
+    public menu(BookService bookService, MemberService memberService, BorrowService borrowService,
+            CirculationLoop circulation, FileIOService fileIO) {
         this.bookService = bookService;
         this.memberService = memberService;
         this.borrowService = borrowService;
+        this.circulation = circulation;
         this.fileIO = fileIO;
         createAndShow();
     }
@@ -39,7 +44,7 @@ public class menu {
             BookService bs = new BookService();
             MemberService ms = new MemberService(java.util.Collections.emptyList(), java.util.Collections.emptyList());
             BorrowService br = new BorrowService(java.util.Collections.emptyList(), java.util.Collections.emptyList());
-            new menu(bs, ms, br, fio);
+            new menu(bs, ms, br, new CirculationLoop(br, ms), fio);
         });
     }
 
@@ -81,6 +86,7 @@ public class menu {
         JButton btnAdd = createActionButton("Add", new Color(0, 123, 255));
         JButton btnUpdate = createActionButton("Update", new Color(255, 193, 7));
         JButton btnDelete = createActionButton("Delete", new Color(220, 53, 69));
+        JButton btnFilter = createActionButton("Filter", new Color(40, 167, 69));
 
         buttonPanel.add(btnReservation);
         buttonPanel.add(btnBooks);
@@ -88,6 +94,7 @@ public class menu {
         buttonPanel.add(btnAdd);
         buttonPanel.add(btnUpdate);
         buttonPanel.add(btnDelete);
+        buttonPanel.add(btnFilter);
 
         // === Homepage Button (Top Right) ===
         JButton btnBackHome = new JButton("← Home");
@@ -129,11 +136,12 @@ public class menu {
         btnAdd.addActionListener(e -> addEntry());
         btnUpdate.addActionListener(e -> updateEntry());
         btnDelete.addActionListener(e -> deleteEntry());
+        btnFilter.addActionListener(e -> filterBooks());
 
         btnBackHome.addActionListener(e -> {
             frame.dispose();
             SwingUtilities.invokeLater(() ->
-                new homepage(bookService, memberService, borrowService, fileIO)
+                new homepage(bookService, memberService, borrowService, circulation, fileIO)
             );
         });
 
@@ -198,45 +206,73 @@ public class menu {
     }
 
     private void showBookData() {
+        // Borrows and returns are journaled, so books.txt can be behind until the next
+        // checkpoint: show the books in memory (the objects every service shares)
+        showBookRows(bookService.getBooksSortedByTitle());
+    }
+
+    private void showBookRows(List<Book> books) {
         String[] columns = {"Book ID", "Title", "Author", "Category", "Status", "Borrowed", "Reservations"};
-        
-        // ✅ Reload books from file to get latest data
-        List<Book> all = fileIO.loadBooks("books.txt");
-        
-        // ✅ Sort alphabetically by title
-        all.sort((a, b) -> a.getTitle().compareToIgnoreCase(b.getTitle()));
-        
-        // ✅ Update BookService's internal list to stay in sync
-        bookService.getAllBooks().clear();
-        bookService.getAllBooks().addAll(all);
-        
-        Object[][] data = new Object[all.size()][columns.length];
-        for (int i = 0; i < all.size(); i++) {
-            Book b = all.get(i);
+        Object[][] data = new Object[books.size()][columns.length];
+        for (int i = 0; i < books.size(); i++) {
+            Book b = books.get(i);
             data[i][0] = b.getId();
             data[i][1] = b.getTitle();
             data[i][2] = b.getAuthor();
             data[i][3] = b.getCategory();
             data[i][4] = b.isAvailable() ? "Available" : "Borrowed";
             data[i][5] = b.getBorrowCount();
-            data[i][6] = b.getReservationQueue() != null ? b.getReservationQueue().size() : 0;
+            data[i][6] = b.getReservationCount();
         }
         updateTableModel(data, columns);
     }
 
+    // Combined book filter: every filled-in field must match (BookQuery plans the lookup)
+    private void filterBooks() {
+        JTextField titleField = new JTextField();
+        JTextField authorField = new JTextField();
+        JTextField categoryField = new JTextField();
+        JTextField keywordsField = new JTextField();
+        JTextField minBorrowsField = new JTextField();
+        JComboBox<String> statusBox = new JComboBox<>(new String[] {"Any", "Available", "Borrowed"});
+        Object[] message = {"Title contains:", titleField, "Author contains:", authorField, "Category:", categoryField,
+                "Keywords:", keywordsField, "Status:", statusBox, "Borrowed at least (times):", minBorrowsField};
+        int option = JOptionPane.showConfirmDialog(frame, message, "Filter Books", JOptionPane.OK_CANCEL_OPTION);
+        if (option != JOptionPane.OK_OPTION) return;
+
+        BookQuery query = bookService.query();
+        if (!titleField.getText().trim().isEmpty()) query.titleContains(titleField.getText().trim());
+        if (!authorField.getText().trim().isEmpty()) query.authorContains(authorField.getText().trim());
+        if (!categoryField.getText().trim().isEmpty()) query.categoryIs(categoryField.getText().trim());
+        if (!keywordsField.getText().trim().isEmpty()) query.keywords(keywordsField.getText().trim());
+        if ("Available".equals(statusBox.getSelectedItem())) query.available();
+        if ("Borrowed".equals(statusBox.getSelectedItem())) query.borrowed();
+        if (!minBorrowsField.getText().trim().isEmpty()) {
+            try {
+                query.borrowCountAtLeast(Integer.parseInt(minBorrowsField.getText().trim()));
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(frame, "Borrow count must be a whole number.", "Invalid Filter", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+        }
+
+        currentView = "BOOKS";
+        showBookRows(query.list());
+    }
+
     private void showMemberData() {
         String[] columns = {"Member ID", "Name", "Borrowed Books", "Reservations"};
         
-        // ✅ Always reload from file to get the latest data
-        List<Member> all = fileIO.loadMembers("members.txt");
+        // In memory, like showBookData: members.txt can be behind the journal
+        List<Member> all = memberService.getAllMembers();
         
         Object[][] data = new Object[all.size()][columns.length];
         for (int i = 0; i < all.size(); i++) {
             Member m = all.get(i);
             data[i][0] = m.getId();
             data[i][1] = m.getName();
-            data[i][2] = m.getBorrowedBookIds() != null ? m.getBorrowedBookIds().size() : 0;
-            data[i][3] = m.getReservationQueue() != null ? m.getReservationQueue().size() : 0;
+            data[i][2] = m.getBorrowedCount();
+            data[i][3] = m.getReservationCount();
         }
         updateTableModel(data, columns);
     }
@@ -258,9 +294,9 @@ public class menu {
             Object[] message = {"Book ID:", idField, "Title:", titleField, "Author:", authorField, "Category:", categoryField};
             int option = JOptionPane.showConfirmDialog(frame, message, "Add New Book", JOptionPane.OK_CANCEL_OPTION);
             if(option == JOptionPane.OK_OPTION) {
-                Book newBook = new Book(idField.getText().trim(), titleField.getText().trim(), authorField.getText().trim(), categoryField.getText().trim());
+                Book newBook = BookService.newBook(idField.getText().trim(), titleField.getText().trim(), authorField.getText().trim(), categoryField.getText().trim());
                 bookService.addBook(newBook);
-                fileIO.saveBooks("books.txt", bookService.getAllBooks());
+                fileIO.saveBooksLater("books.txt", bookService.getAllBooks());
                 showBookData();
             }
         } else if(currentView.equals("MEMBERS")) {
@@ -271,7 +307,7 @@ public class menu {
             if(option == JOptionPane.OK_OPTION) {
                 Member newMember = new Member(idField.getText().trim(), nameField.getText().trim());
                 memberService.addMember(newMember);
-                fileIO.saveMembers("members.txt", memberService.getAllMembers());
+                fileIO.saveMembersLater("members.txt", memberService.getAllMembers());
                 showMemberData();
             }
         } else if(currentView.equals("RESERVATION")) {
@@ -286,8 +322,8 @@ public class menu {
                 String memberName = memberNameField.getText().trim();
                 boolean success = bookService.addReservation(bookId, memberId, memberName);
                 if(success) {
-                	fileIO.saveBooksAlphabetically("books.txt", bookService.getAllBooks());
-                    fileIO.saveMembers("members.txt", memberService.getAllMembers());
+                	fileIO.saveBooksLater("books.txt", bookService.getAllBooks());
+                    fileIO.saveMembersLater("members.txt", memberService.getAllMembers());
                     showReservationData();
                 } else {
                     JOptionPane.showMessageDialog(frame, "Failed to add reservation (duplicate or invalid book).");
@@ -334,91 +370,30 @@ public class menu {
                 String newStatus = statusCombo.getSelectedItem().toString();
 
                 // ✅ Handle status change: Borrowed → Available (Return)
+                // Return and hand-off go through BorrowService, so both are journaled, and run as
+                // one operation on the circulation loop so no desk borrows the copy in between
                 if(newStatus.equals("Available") && !book.isAvailable()) {
-                    String borrowerId = book.getCurrentBorrowerId();
-                    
-                    // ✅ Load ALL members ONCE
-                    List<Member> allMembers = fileIO.loadMembers("members.txt");
-                    System.out.println("[DEBUG] Loaded " + allMembers.size() + " members from file");
-                    
-                    if(borrowerId != null) {
-                        System.out.println("[DEBUG] Returning book " + bookId + " by member " + borrowerId);
-                        
-                        // ✅ Find and update member1 (returning borrower)
-                        for (int i = 0; i < allMembers.size(); i++) {
-                            if (allMembers.get(i).getId().equals(borrowerId)) {
-                                Member borrower = allMembers.get(i);
-                                borrower.returnBook(bookId);
-                                allMembers.set(i, borrower);
-                                System.out.println("[DEBUG] Member1 updated - borrowed: " + borrower.getBorrowedBookIds().size());
-                                break;
-                            }
+                    String nextBorrower = circulation.submit(() -> {
+                        String borrowerId = book.getCurrentBorrowerId();
+                        if(borrowerId == null || !borrowService.returnBook(borrowerId, bookId, LocalDate.now())) {
+                            // No open loan to close, just free the copy
+                            book.setAvailable(true);
+                            book.clearCurrentBorrower();
                         }
-                        
-                        // ✅ Try to update borrow record
-                        borrowService.returnBook(borrowerId, bookId, LocalDate.now());
-                    }
 
-                    // ✅ Check if there's a reservation queue
-                    if(book.hasReservations()) {
+                        // ✅ Check if there's a reservation queue
+                        if(!book.hasReservations()) return null;
                         String nextMemberId = book.pollNextReservation();
-                        System.out.println("[DEBUG] Next member in queue: " + nextMemberId);
-                        
-                        // ✅ Find and update member2 (next borrower) in the SAME list
-                        Member nextMember = null;
-                        for (int i = 0; i < allMembers.size(); i++) {
-                            if (allMembers.get(i).getId().equals(nextMemberId)) {
-                                nextMember = allMembers.get(i);
-                                nextMember.removeFromReservationQueue(bookId);
-                                nextMember.borrowBook(bookId);
-                                allMembers.set(i, nextMember);
-                                System.out.println("[DEBUG] Member2 updated - borrowed: " + nextMember.getBorrowedBookIds().size() + 
-                                                 ", reservations: " + nextMember.getReservationQueue().size());
-                                break;
-                            }
-                        }
-                        
-                        if(nextMember != null) {
-                            // ✅ Update book for new borrower
-                            book.setAvailable(false);
-                            book.setCurrentBorrower(nextMember.getId(), nextMember.getName());
-                            book.incrementBorrowCount();
-                            
-                            // ✅ CRITICAL: Create borrow record for member2
-                            try {
-                                model.BorrowRecord newRecord = new model.BorrowRecord(
-                                    bookId, 
-                                    nextMember.getId(), 
-                                    nextMember.getName(), 
-                                    LocalDate.now()
-                                );
-                                
-                                // Load all records, add new one, save all
-                                List<model.BorrowRecord> allRecords = fileIO.loadBorrowRecords("borrow_records.txt");
-                                allRecords.add(newRecord);
-                                fileIO.saveBorrowRecords("borrow_records.txt", allRecords);
-                                
-                                System.out.println("[DEBUG] ✅ Borrow record created for " + nextMember.getName() + 
-                                                 " (ID: " + nextMember.getId() + ") - Book: " + bookId);
-                            } catch (Exception e) {
-                                System.out.println("[ERROR] ❌ Failed to create borrow record: " + e.getMessage());
-                                e.printStackTrace();
-                            }
-                            
-                            JOptionPane.showMessageDialog(frame, 
-                                "Book returned by previous borrower and automatically borrowed by " + nextMember.getName() + " (from reservation queue)!");
-                        }
-                    } else {
-                        // No reservations, book is now available
-                        book.setAvailable(true);
-                        book.clearCurrentBorrower();
-                        System.out.println("[DEBUG] No reservations, book is now available");
+                        Member nextMember = memberService.searchMemberByID(nextMemberId);
+                        if(nextMember != null) nextMember.removeFromReservationQueue(bookId);
+                        return borrowService.borrowBook(nextMemberId, bookId, LocalDate.now()) ? book.getCurrentBorrowerName() : null;
+                    }).join(); // the dialog goes on with the saves and the refresh below
+
+                    if(nextBorrower != null) {
+                        JOptionPane.showMessageDialog(frame, 
+                            "Book returned by previous borrower and automatically borrowed by " + nextBorrower + " (from reservation queue)!");
                     }
-                    
-                    // ✅ Save ALL members ONCE (includes both member1 and member2 updates)
-                    fileIO.saveMembers("members.txt", allMembers);
-                    System.out.println("[DEBUG] Saved " + allMembers.size() + " members to file");
-                    
+                    fileIO.saveMembersLater("members.txt", memberService.getAllMembers());
                 } 
                 else if(newStatus.equals("Borrowed") && book.isAvailable()) {
                     book.setAvailable(false);
@@ -430,7 +405,7 @@ public class menu {
                 book.setCategory(newCategory);
                 
                 // ✅ Save the book changes
-                fileIO.saveBooks("books.txt", bookService.getAllBooks());
+                fileIO.saveBooksLater("books.txt", bookService.getAllBooks());
                 System.out.println("[DEBUG] Book saved - Status: " + (book.isAvailable() ? "Available" : "Borrowed"));
 
                 // ✅ Refresh
@@ -471,7 +446,7 @@ public class menu {
                         break;
                     }
                 }
-                fileIO.saveMembers("members.txt", allMembers);
+                fileIO.saveMembersLater("members.txt", allMembers);
                 
                 showMemberData();
                 JOptionPane.showMessageDialog(frame, "Member updated successfully!");
@@ -492,20 +467,26 @@ public class menu {
         if(currentView.equals("BOOKS")) {
             String bookId = table.getValueAt(selectedRow, 0).toString();
             bookService.removeBook(bookId);
-            fileIO.saveBooks("books.txt", bookService.getAllBooks());
+            fileIO.saveBooksLater("books.txt", bookService.getAllBooks());
             showBookData();
         } else if(currentView.equals("MEMBERS")) {
             String memberId = table.getValueAt(selectedRow, 0).toString();
             memberService.removeMember(memberId);
-            fileIO.saveMembers("members.txt", memberService.getAllMembers());
+            fileIO.saveMembersLater("members.txt", memberService.getAllMembers());
             showMemberData();
         } else if(currentView.equals("RESERVATION")) {
             String bookId = table.getValueAt(selectedRow, 0).toString();      
             String memberId = table.getValueAt(selectedRow, 1).toString();
             Book book = bookService.searchBookById(bookId);
             if (book != null) {
-                book.getReservationQueue().removeItem(memberId);
-                fileIO.saveBooksAlphabetically("books.txt", bookService.getAllBooks());
+                // Remove from the id and name queues together, and from the member's own list
+                book.removeReservation(memberId);
+                Member member = memberService.searchMemberByID(memberId);
+                if (member != null) {
+                    member.removeFromReservationQueue(bookId);
+                    fileIO.saveMembersLater("members.txt", memberService.getAllMembers());
+                }
+                fileIO.saveBooksLater("books.txt", bookService.getAllBooks());
                 showReservationData();
             }
         }
@@ -0,0 +1,149 @@
+package main;
+
+import model.Book;
+import service_implementation.BookService;
+import utils.BKTree;
+import utils.InvertedIndex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * FuzzySearchBenchmark - BookService.searchBooksFuzzy (BK-tree over the vocabulary)
+ * against a brute-force scan that computes the edit distance to every word of every
+ * book, on a synthetic catalog.
+ *
+ * Titles and authors are made of random syllable words, so the vocabulary is large
+ * and realistic misspellings (one or two edits of a catalog word) are easy to make.
+ * Both sides must return the same books in the same order; a mismatch is reported.
+ *
+ * Run: java -Xmx2g -cp out main.FuzzySearchBenchmark [titles] [queries] [maxDistance]
+ */
+public class FuzzySearchBenchmark {
+
+    private static final String[] SYLLABLES = {
+        "an", "bel", "cor", "da", "el", "fan", "gor", "hal", "is", "jen", "ka", "lor", "mi", "nor",
+        "or", "pel", "qua", "ros", "sa", "tor", "ul", "ven", "wel", "xan", "yor", "zi", "well", "sei"
+    };
+    private static final int WARMUP_QUERIES = 20;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int maxDistance = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        Random random = new Random(42);
+
+        String[] words = new String[20_000];
+        for (int i = 0; i < words.length; i++) words[i] = word(random);
+        String[] authors = new String[5_000];
+        for (int i = 0; i < authors.length; i++) authors[i] = capitalize(word(random)) + " " + capitalize(word(random));
+
+        List<Book> books = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            StringBuilder title = new StringBuilder();
+            int length = 1 + random.nextInt(4);
+            for (int w = 0; w < length; w++) {
+                if (w > 0) title.append(' ');
+                title.append(capitalize(words[random.nextInt(words.length)]));
+            }
+            // Zero-padded ids keep id order = list order, which is how ties are ranked
+            books.add(BookService.newBook(String.format("B%07d", i), title.toString(),
+                    authors[random.nextInt(authors.length)], "Fiction"));
+        }
+
+        long t0 = System.nanoTime();
+        BookService service = new BookService(books);
+        long t1 = System.nanoTime();
+        System.out.printf("Catalog: %d titles, index build %.0f ms%n", n, (t1 - t0) / 1e6);
+
+        String[] misspelt = new String[WARMUP_QUERIES + queries];
+        for (int i = 0; i < misspelt.length; i++) {
+            Book b = books.get(random.nextInt(n));
+            String[] tokens = InvertedIndex.tokenize(b.getTitle(), b.getAuthor());
+            misspelt[i] = typo(tokens[random.nextInt(tokens.length)], random);
+        }
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            service.searchBooksFuzzy(misspelt[i], maxDistance);
+            bruteForce(books, misspelt[i], maxDistance);
+        }
+
+        long indexNanos = 0;
+        long bruteNanos = 0;
+        long hits = 0;
+        int mismatches = 0;
+        for (int i = WARMUP_QUERIES; i < misspelt.length; i++) {
+            long s0 = System.nanoTime();
+            List<Book> indexed = service.searchBooksFuzzy(misspelt[i], maxDistance);
+            long s1 = System.nanoTime();
+            List<Book> scanned = bruteForce(books, misspelt[i], maxDistance);
+            long s2 = System.nanoTime();
+            indexNanos += s1 - s0;
+            bruteNanos += s2 - s1;
+            hits += indexed.size();
+            if (!indexed.equals(scanned)) {
+                mismatches++;
+                System.out.println("MISMATCH for \"" + misspelt[i] + "\": " + indexed.size() + " vs " + scanned.size());
+            }
+        }
+
+        System.out.printf("%d queries, max distance %d, %.1f hits/query%n", queries, maxDistance, (double) hits / queries);
+        System.out.printf("%-12s %12s%n", "search", "ms/query");
+        System.out.printf("%-12s %12.3f%n", "BK-tree", indexNanos / 1e6 / queries);
+        System.out.printf("%-12s %12.3f%n", "brute force", bruteNanos / 1e6 / queries);
+        System.out.println(mismatches == 0 ? "Results identical" : mismatches + " queries differ");
+    }
+
+    // Every book, every word: the per-query cost the index avoids
+    private static List<Book> bruteForce(List<Book> books, String query, int maxDistance) {
+        String[] tokens = InvertedIndex.tokenize(query);
+        List<Book> matches = new ArrayList<>();
+        List<Integer> scores = new ArrayList<>();
+        for (Book b : books) {
+            String[] words = InvertedIndex.tokenize(b.getTitle(), b.getAuthor(), b.getCategory());
+            int score = 0;
+            for (String token : tokens) {
+                int best = Integer.MAX_VALUE;
+                for (String word : words) best = Math.min(best, BKTree.distance(token, word));
+                if (best > maxDistance) {
+                    score = -1;
+                    break;
+                }
+                score += best;
+            }
+            if (score >= 0) {
+                matches.add(b);
+                scores.add(score);
+            }
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < matches.size(); i++) order.add(i);
+        order.sort(Comparator.<Integer>comparingInt(scores::get).thenComparingInt(i -> i));
+        List<Book> result = new ArrayList<>(order.size());
+        for (int i : order) result.add(matches.get(i));
+        return result;
+    }
+
+    private static String word(Random random) {
+        StringBuilder w = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) w.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        return w.toString();
+    }
+
+    private static String capitalize(String w) {
+        return Character.toUpperCase(w.charAt(0)) + w.substring(1);
+    }
+
+    // One random insertion, deletion or substitution
+    private static String typo(String w, Random random) {
+        int at = random.nextInt(w.length());
+        char c = (char) ('a' + random.nextInt(26));
+        switch (random.nextInt(3)) {
+            case 0: return w.substring(0, at) + c + w.substring(at);
+            case 1: return w.length() > 1 ? w.substring(0, at) + w.substring(at + 1) : w;
+            default: return w.substring(0, at) + c + w.substring(at + 1);
+        }
+    }
+}
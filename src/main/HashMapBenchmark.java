@@ -0,0 +1,91 @@
+package main;
+
+import utils.HashMap_Imp;
+import utils.HashMap_Int;
+
+import java.util.HashMap;
+
+/**
+ * HashMapBenchmark - compares utils.HashMap_Imp with java.util.HashMap on the
+ * lookups the services do (String ids such as "B123" / "M1759922135006").
+ *
+ * Plain main instead of JMH (no build tool here): each case is warmed up and then
+ * timed over several rounds, and the best round is reported in ns per operation.
+ *
+ * Run: java -cp out main.HashMapBenchmark [entries]
+ */
+public class HashMapBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    // Just the calls under test, so both maps go through the same code
+    private interface MapOps {
+        void put(String key, Integer value);
+        Integer get(String key);
+        Integer remove(String key);
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String[] keys = new String[n];
+        String[] missing = new String[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = "B" + (1_000_000 + i * 7);
+            missing[i] = "M" + (1_000_000 + i * 7);
+        }
+
+        System.out.println("Entries: " + n + " (best of " + ROUNDS + " rounds, ns/op)");
+        System.out.printf("%-22s %10s %10s %10s %10s%n", "map", "put", "get hit", "get miss", "remove");
+        run("utils.HashMap_Imp", () -> wrap(new HashMap_Imp<>()), keys, missing);
+        run("java.util.HashMap", () -> wrap(new HashMap<>()), keys, missing);
+    }
+
+    private interface MapFactory {
+        MapOps create();
+    }
+
+    private static MapOps wrap(HashMap_Int<String, Integer> map) {
+        return new MapOps() {
+            public void put(String key, Integer value) { map.put(key, value); }
+            public Integer get(String key) { return map.get(key); }
+            public Integer remove(String key) { return map.remove(key); }
+        };
+    }
+
+    private static MapOps wrap(HashMap<String, Integer> map) {
+        return new MapOps() {
+            public void put(String key, Integer value) { map.put(key, value); }
+            public Integer get(String key) { return map.get(key); }
+            public Integer remove(String key) { return map.remove(key); }
+        };
+    }
+
+    private static void run(String name, MapFactory factory, String[] keys, String[] missing) {
+        double[] best = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        long sink = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            MapOps map = factory.create();
+            Integer one = 1;
+
+            long t0 = System.nanoTime();
+            for (String key : keys) map.put(key, one);
+            long t1 = System.nanoTime();
+            for (String key : keys) sink += map.get(key);
+            long t2 = System.nanoTime();
+            for (String key : missing) if (map.get(key) != null) sink++;
+            long t3 = System.nanoTime();
+            for (String key : keys) sink += map.remove(key);
+            long t4 = System.nanoTime();
+
+            if (round >= WARMUP_ROUNDS) {
+                best[0] = Math.min(best[0], (double) (t1 - t0) / keys.length);
+                best[1] = Math.min(best[1], (double) (t2 - t1) / keys.length);
+                best[2] = Math.min(best[2], (double) (t3 - t2) / keys.length);
+                best[3] = Math.min(best[3], (double) (t4 - t3) / keys.length);
+            }
+        }
+        System.out.printf("%-22s %10.1f %10.1f %10.1f %10.1f%n", name, best[0], best[1], best[2], best[3]);
+        if (sink == 42) System.out.println(); // keep the results alive
+    }
+}
@@ -3,36 +3,44 @@ package main;
 import service_implementation.BookService;
 import service_implementation.MemberService;
 import service_implementation.BorrowService;
+import service_implementation.CirculationLoop;
 import service_implementation.FileIOService;
-import model.Book;
-import model.Member;
+import service_implementation.StartupLoader;
 
 import gui.homepage;
 
-import java.util.List;
-
 public class Test_Main {
     public static void main(String[] args) {
         // Initialize file IO and load data
         FileIOService fileIO = new FileIOService();
         String membersFile = "members.txt";
         String booksFile = "books.txt";
+        String recordsFile = "borrow_records.txt";
+        String snapshotFile = "library.snapshot"; // written by every checkpoint
+
+        // Map the snapshot when it is current, otherwise parse the three files in parallel,
+        // and construct the service layer objects used across the GUI
+        StartupLoader loader = new StartupLoader(fileIO);
+        loader.load(booksFile, membersFile, recordsFile, snapshotFile);
+
+        BookService bookService = loader.getBookService();
+        MemberService memberService = loader.getMemberService();
+        BorrowService borrowService = loader.getBorrowService();
 
-        List<Member> members = fileIO.loadMembers(membersFile);
-        List<Book> books = fileIO.loadBooks(booksFile);
+        // Keep borrow_records.txt small: old returned loans move to the compressed history archive
+        borrowService.archiveClosedRecords(Integer.getInteger("library.archiveAfterDays", 180));
 
-        // Construct service layer objects used across the GUI
-        BookService bookService = new BookService(books);
-        // if BookService has a constructor that accepts existing books, you can adapt accordingly.
-        // We'll add loaded books into the bookService list (works with the BookService provided earlier)
-        for (Book b : books) {
-            bookService.addBook(b);
-        }
+        // Desk borrow / return / reserve calls are applied one at a time on its writer thread
+        CirculationLoop circulation = new CirculationLoop(borrowService, memberService);
 
-        MemberService memberService = new MemberService(members, books);
-        BorrowService borrowService = new BorrowService(members, books);
+        // Fold the borrow journal back into the .txt files on a normal exit, once the loop
+        // has applied what is queued (checkpoint also flushes saves still in the scheduler)
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            circulation.close();
+            borrowService.checkpoint();
+        }));
 
         // Launch homepage GUI and pass services
-        javax.swing.SwingUtilities.invokeLater(() -> new homepage(bookService, memberService, borrowService, fileIO));
+        javax.swing.SwingUtilities.invokeLater(() -> new homepage(bookService, memberService, borrowService, circulation, fileIO));
     }
 }
@@ -1,10 +1,20 @@
 package model;
 
+import utils.HashMap_Imp;
+import utils.IdDictionary;
+import utils.LineTokenizer;
 import utils.Queue_Imp;
 
+import java.util.Collections;
+import java.util.Iterator;
+
 /**
  * Book model class representing a book in the library system.
  * Uses custom Queue_Imp for reservation queue (FIFO) and tracks borrow count for popularity.
+ * The reservation queues are only created once someone reserves the book.
+ *
+ * OffHeapBook overrides the field getters/setters to keep them in an OffHeapCatalog row,
+ * so code inside this class reads fields through the getters.
  *
  * Implements Comparable<Book> so utility structures (e.g. MaxHeap_Imp<Book>)
  * can compare books by borrow count (higher borrowCount => "greater").
@@ -12,93 +22,157 @@ import utils.Queue_Imp;
 public class Book implements Comparable<Book> {
     private String id;
     private String title;
-    private String author;
-    private String category;
+    private int authorCode;   // code in Dictionaries.AUTHORS
+    private int categoryCode; // code in Dictionaries.CATEGORIES
     private boolean isAvailable;
-    private String currentBorrowerId;
-    private String currentBorrowerName;
+    private int currentBorrowerKey = IdDictionary.NO_KEY;      // key in Dictionaries.MEMBER_IDS
+    private int currentBorrowerNameCode = IdDictionary.NO_KEY; // code in Dictionaries.MEMBER_NAMES
     private int borrowCount;
-    private Queue_Imp<String> reservationQueue; // Queue of member IDs (FIFO)
-    private Queue_Imp<String> reservationQueueNames; // Queue of member names for display
+    // Queues of member IDs (FIFO) and names for display. They hold the dictionaries'
+    // shared String instances, not copies: a queue of boxed keys would not be smaller.
+    private Queue_Imp<String> reservationQueue;
+    private Queue_Imp<String> reservationQueueNames;
+    private HashMap_Imp<String, Long> reservationHandles; // memberId -> queue handle, created on first reservation
+    private boolean dirty; // changed since it was last written to books.txt
+    private BookObserver observer; // index that must hear about count changes, may be null
+
+    // For subclasses that keep the fields elsewhere (OffHeapBook)
+    protected Book() {
+        this.dirty = true;
+    }
 
     public Book(String id, String title, String author, String category) {
         this.id = id;
         this.title = title;
-        this.author = author;
-        this.category = category;
+        this.authorCode = Dictionaries.AUTHORS.keyOf(author);
+        this.categoryCode = Dictionaries.CATEGORIES.keyOf(category);
         this.isAvailable = true;
-        this.currentBorrowerId = null;
-        this.currentBorrowerName = null;
         this.borrowCount = 0;
-        this.reservationQueue = new Queue_Imp<>();
-        this.reservationQueueNames = new Queue_Imp<>();
+        this.dirty = true; // not in the file yet
     }
 
     // Getters
     public String getId() { return id; }
     public String getTitle() { return title; }
-    public String getAuthor() { return author; }
-    public String getCategory() { return category; }
+    public String getAuthor() { return Dictionaries.AUTHORS.nameOf(getAuthorCode()); }
+    public String getCategory() { return Dictionaries.CATEGORIES.nameOf(getCategoryCode()); }
+    public int getAuthorCode() { return authorCode; }
+    public int getCategoryCode() { return categoryCode; }
     public boolean isAvailable() { return isAvailable; }
-    public String getCurrentBorrowerId() { return currentBorrowerId; }
-    public String getCurrentBorrowerName() { return currentBorrowerName; }
+    public String getCurrentBorrowerId() { return Dictionaries.MEMBER_IDS.nameOf(currentBorrowerKey); }
+    public String getCurrentBorrowerName() { return Dictionaries.MEMBER_NAMES.nameOf(currentBorrowerNameCode); }
     public int getBorrowCount() { return borrowCount; }
-    public Queue_Imp<String> getReservationQueue() { return reservationQueue; }
-    public Queue_Imp<String> getReservationQueueNames() { return reservationQueueNames; }
+    // Read-only views in queue order (the iterators do not support remove); change the
+    // queue through addToReservationQueue / pollNextReservation / removeReservation
+    public Iterable<String> getReservationQueue() {
+        return reservationQueue == null ? Collections.emptyList() : reservationQueue::iterator;
+    }
+    public Iterable<String> getReservationQueueNames() {
+        return reservationQueueNames == null ? Collections.emptyList() : reservationQueueNames::iterator;
+    }
+
+    // Creates the reservation queues on first use
+    private Queue_Imp<String> reservations() {
+        if (reservationQueue == null) {
+            reservationQueue = new Queue_Imp<>();
+            reservationQueueNames = new Queue_Imp<>();
+        }
+        return reservationQueue;
+    }
 
-    // Setters
-    public void setAvailable(boolean available) { this.isAvailable = available; }
+    // Setters (each one marks the book dirty so only changed rows get rewritten)
+    public void setAvailable(boolean available) { this.isAvailable = available; dirty = true; }
     public void setCurrentBorrower(String borrowerId, String borrowerName) {
-        this.currentBorrowerId = borrowerId;
-        this.currentBorrowerName = borrowerName;
+        this.currentBorrowerKey = Dictionaries.MEMBER_IDS.keyOf(borrowerId);
+        this.currentBorrowerNameCode = Dictionaries.MEMBER_NAMES.keyOf(borrowerName);
+        dirty = true;
     }
     public void clearCurrentBorrower() {
-        this.currentBorrowerId = null;
-        this.currentBorrowerName = null;
+        this.currentBorrowerKey = IdDictionary.NO_KEY;
+        this.currentBorrowerNameCode = IdDictionary.NO_KEY;
+        dirty = true;
+    }
+    public void setTitle(String title) { this.title = title; textChanged(); }
+    public void setAuthor(String author) { this.authorCode = Dictionaries.AUTHORS.keyOf(author); textChanged(); }
+    public void setCategory(String category) { this.categoryCode = Dictionaries.CATEGORIES.keyOf(category); textChanged(); }
+
+    // Marks the book dirty and lets the observer re-index its searchable text
+    protected void textChanged() {
+        dirty = true;
+        if (observer != null) observer.textChanged(this);
+    }
+
+    public void incrementBorrowCount() { setBorrowCount(getBorrowCount() + 1); }
+    public void setBorrowCount(int borrowCount) {
+        int old = this.borrowCount;
+        this.borrowCount = borrowCount;
+        borrowCountChanged(old);
+    }
+
+    // Marks the book dirty and tells the observer; every setBorrowCount ends here
+    protected void borrowCountChanged(int oldCount) {
+        dirty = true;
+        if (observer != null && oldCount != getBorrowCount()) observer.borrowCountChanged(this, oldCount);
     }
-    public void setTitle(String title) { this.title = title; }
-    public void setAuthor(String author) { this.author = author; }
-    public void setCategory(String category) { this.category = category; }
 
-    public void incrementBorrowCount() { this.borrowCount++; }
+    // Observer (the BookService holding this book keeps its popularity heap up to date)
+    public BookObserver getObserver() { return observer; }
+    public void setObserver(BookObserver observer) { this.observer = observer; }
+
+    // Dirty tracking
+    public boolean isDirty() { return dirty; }
+    public void markDirty() { dirty = true; } // for changes made directly on the reservation queues
+    public void clearDirty() { dirty = false; }
 
     // Reservation queue operations using Queue
 
     // Add a member to the reservation queue (enqueue)
     public void addToReservationQueue(String memberId, String memberName) {
         // Note: Queue allows duplicates, but we'll check in service layer if needed
-        reservationQueue.enqueue(memberId);
-        reservationQueueNames.enqueue(memberName);
+        // Both queues are always changed together, so an entry has the same handle in each
+        memberId = Dictionaries.MEMBER_IDS.canonical(memberId);
+        long handle = reservations().enqueueWithHandle(memberId);
+        reservationQueueNames.enqueue(Dictionaries.MEMBER_NAMES.canonical(memberName));
+        if (reservationHandles == null) reservationHandles = new HashMap_Imp<>();
+        reservationHandles.put(memberId, handle);
+        dirty = true;
     }
 
     // Remove and return the next member in the reservation queue (dequeue)
     public String pollNextReservation() {
-        if (!reservationQueue.isEmpty()) {
+        if (hasReservations()) {
             // Dequeue both id and name (keep them in sync)
+            long handle = reservationQueue.peekHandle();
             String id = reservationQueue.dequeue();
             reservationQueueNames.dequeue(); // discard or use as needed by caller
+            Long latest = reservationHandles == null ? null : reservationHandles.get(id);
+            if (latest != null && latest == handle) reservationHandles.remove(id);
+            dirty = true;
             return id;
         }
         return null;
     }
 
+    // Remove a member's reservation from both queues without rebuilding them
+    public boolean removeReservation(String memberId) {
+        Long handle = reservationHandles == null ? null : reservationHandles.remove(memberId);
+        if (handle == null || reservationQueue == null || !reservationQueue.remove(handle)) return false;
+        reservationQueueNames.remove(handle);
+        dirty = true;
+        return true;
+    }
+
+    public boolean hasReservation(String memberId) {
+        return reservationHandles != null && reservationHandles.containsKey(memberId);
+    }
+
     // Check if the reservation queue is not empty
     public boolean hasReservations() {
-        return !reservationQueue.isEmpty();
+        return reservationQueue != null && !reservationQueue.isEmpty();
     }
 
-    // Get queue size (need to peek at internal structure or track separately)
     public int getReservationCount() {
-        // Since Queue_Imp doesn't have size(), we'll count by converting to string
-        // This is a workaround - ideally Queue_Imp should have a size() method
-        String queueStr = reservationQueue.toString();
-        if (queueStr.equals("[]")) return 0;
-        // Count commas + 1 to get element count
-        int count = 1;
-        for (char c : queueStr.toCharArray()) {
-            if (c == ',') count++;
-        }
-        return count;
+        return reservationQueue == null ? 0 : reservationQueue.size();
     }
 
     // String representation for file I/O
@@ -108,45 +182,33 @@ public class Book implements Comparable<Book> {
         
         // Build queue string with ID:Name pairs
         String queueStr;
-        if (reservationQueue.isEmpty()) {
+        if (!hasReservations()) {
             queueStr = "[none]";
         } else {
-            // We need to iterate through the queue without dequeuing permanently
-            Queue_Imp<String> tempIds = new Queue_Imp<>();
-            Queue_Imp<String> tempNames = new Queue_Imp<>();
             StringBuilder queueBuilder = new StringBuilder("[");
+            Iterator<String> names = reservationQueueNames.iterator();
             boolean first = true;
-
-            while (!reservationQueue.isEmpty()) {
-                String id = reservationQueue.dequeue();
-                String name = reservationQueueNames.dequeue();
-                tempIds.enqueue(id);
-                tempNames.enqueue(name);
-
+            for (String id : reservationQueue) {
                 if (!first) queueBuilder.append(";");
-                queueBuilder.append(id).append(":").append(name);
+                queueBuilder.append(LineTokenizer.quote(id)).append(":").append(LineTokenizer.quote(names.next()));
                 first = false;
             }
-
-            // Restore the queues
-            while (!tempIds.isEmpty()) {
-                reservationQueue.enqueue(tempIds.dequeue());
-                reservationQueueNames.enqueue(tempNames.dequeue());
-            }
-
             queueBuilder.append("]");
             queueStr = queueBuilder.toString();
         }
         
         // Build current borrower string
-        String borrowerStr = (currentBorrowerId == null || currentBorrowerId.isEmpty()) ? 
+        String borrowerId = getCurrentBorrowerId();
+        String borrowerStr = (borrowerId == null || borrowerId.isEmpty()) ? 
             "none" : 
-            currentBorrowerId + ":" + currentBorrowerName;
+            LineTokenizer.quote(borrowerId) + ":" + LineTokenizer.quote(getCurrentBorrowerName());
         
-        return id + "," + title + "," + author + "," + category + "," +
-               (isAvailable ? "available" : "borrowed") + "," + 
+        // Text fields are quoted if they contain , : ; [ ] or "
+        return LineTokenizer.quote(getId()) + "," + LineTokenizer.quote(getTitle()) + "," +
+               LineTokenizer.quote(getAuthor()) + "," + LineTokenizer.quote(getCategory()) + "," +
+               (isAvailable() ? "available" : "borrowed") + "," + 
                borrowerStr + "," + 
-               borrowCount + "," + 
+               getBorrowCount() + "," + 
                queueStr;
     }
 
@@ -157,6 +219,6 @@ public class Book implements Comparable<Book> {
     @Override
     public int compareTo(Book other) {
         if (other == null) return 1;
-        return Integer.compare(this.borrowCount, other.borrowCount);
+        return Integer.compare(getBorrowCount(), other.getBorrowCount());
     }
 }
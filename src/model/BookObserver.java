@@ -0,0 +1,19 @@
+package model;
+
+/**
+ * BookObserver - notified when a Book changes in a way an index over books cares about.
+ *
+ * A Book has at most one observer (normally the BookService that holds it). Every
+ * method has an empty default, so an observer only overrides what it indexes.
+ * Callbacks run on the thread that changed the book and should return quickly.
+ */
+public interface BookObserver {
+
+    // borrowCount changed from oldCount to book.getBorrowCount()
+    default void borrowCountChanged(Book book, int oldCount) {
+    }
+
+    // title, author or category changed (read the new values from book)
+    default void textChanged(Book book) {
+    }
+}
@@ -1,28 +1,32 @@
 package model;
 
+import utils.LineTokenizer;
+
 import java.time.LocalDate;
 
 public class BorrowRecord {
-    private String bookId;
-    private String memberId;
-    private String memberName;
+    private int bookKey;        // key in Dictionaries.BOOK_IDS
+    private int memberKey;      // key in Dictionaries.MEMBER_IDS
+    private int memberNameCode; // code in Dictionaries.MEMBER_NAMES
     private LocalDate borrowDate;
     private LocalDate returnDate;
 
     public BorrowRecord(String bookId, String memberId, String memberName, LocalDate borrowDate) {
-        this.bookId = bookId;
-        this.memberId = memberId;
-        this.memberName = memberName;
+        this.bookKey = Dictionaries.BOOK_IDS.keyOf(bookId);
+        this.memberKey = Dictionaries.MEMBER_IDS.keyOf(memberId);
+        this.memberNameCode = Dictionaries.MEMBER_NAMES.keyOf(memberName);
         this.borrowDate = borrowDate;
         this.returnDate = null;
     }
 
     // Getters
-    public String getBookId() { return bookId; }
-    public String getMemberId() { return memberId; }
-    public String getMemberName() { return memberName; }
+    public String getBookId() { return Dictionaries.BOOK_IDS.nameOf(bookKey); }
+    public String getMemberId() { return Dictionaries.MEMBER_IDS.nameOf(memberKey); }
+    public String getMemberName() { return Dictionaries.MEMBER_NAMES.nameOf(memberNameCode); }
     public LocalDate getBorrowDate() { return borrowDate; }
     public LocalDate getReturnDate() { return returnDate; }
+    public int getBookKey() { return bookKey; }
+    public int getMemberKey() { return memberKey; }
 
     public void setReturnDate(LocalDate returnDate) {
         this.returnDate = returnDate;
@@ -30,6 +34,6 @@ public class BorrowRecord {
 
     @Override
     public String toString() {
-        return bookId + "," + memberId + "," + memberName + "," + borrowDate + "," + (returnDate != null ? returnDate : "not returned");
+        return LineTokenizer.quote(getBookId()) + "," + LineTokenizer.quote(getMemberId()) + "," + LineTokenizer.quote(getMemberName()) + "," + borrowDate + "," + (returnDate != null ? returnDate : "not returned");
     }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package model;
+
+import utils.IdDictionary;
+
+/**
+ * Dictionaries - shared dictionaries for strings that repeat across many rows.
+ *
+ * A catalog has a few dozen categories and far fewer authors than books, and a
+ * member's name is repeated in every one of their borrow records. Book and
+ * BorrowRecord store these fields as int codes into the dictionaries below, so each
+ * distinct value is kept once and comparing two values is an int compare.
+ *
+ * Book and member ids get dense keys the same way: BorrowRecord and Member's book
+ * lists hold keys from BOOK_IDS / MEMBER_IDS, and indexes such as OpenLoanIndex are
+ * arrays indexed by them. The id strings are only looked up at the I/O and GUI edges.
+ *
+ * Codes are assigned as values are first seen and are only valid within one run;
+ * files always contain the strings.
+ */
+public final class Dictionaries {
+
+    public static final IdDictionary AUTHORS = new IdDictionary(1024);
+    public static final IdDictionary CATEGORIES = new IdDictionary(64);
+    public static final IdDictionary MEMBER_NAMES = new IdDictionary(1024);
+    public static final IdDictionary BOOK_IDS = new IdDictionary(1024);
+    public static final IdDictionary MEMBER_IDS = new IdDictionary(1024);
+
+    private Dictionaries() {
+    }
+}
@@ -1,65 +1,99 @@
 package model;
 
-import utils.SinglyLinkedList_Imp;
+import utils.IntList;
+import utils.LineTokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class Member {
     private String id;
     private String name;
-    private SinglyLinkedList_Imp<String> borrowedBookIds;
-    private SinglyLinkedList_Imp<String> reservationQueue;
+    private IntList borrowedBookKeys; // keys in Dictionaries.BOOK_IDS, in borrow order
+    private IntList reservationKeys;  // keys in Dictionaries.BOOK_IDS, in reservation order
+    private boolean dirty; // changed since it was last written to members.txt
 
     public Member(String id, String name) {
         this.id = id;
         this.name = name;
-        this.borrowedBookIds = new SinglyLinkedList_Imp<>();
-        this.reservationQueue = new SinglyLinkedList_Imp<>();
+        this.borrowedBookKeys = new IntList();
+        this.reservationKeys = new IntList();
+        this.dirty = true;
     }
 
     // Default constructor (optional but helpful for GUI use)
     public Member() {
-        this.borrowedBookIds = new SinglyLinkedList_Imp<>();
-        this.reservationQueue = new SinglyLinkedList_Imp<>();
+        this.borrowedBookKeys = new IntList();
+        this.reservationKeys = new IntList();
+        this.dirty = true;
     }
 
     // Getters
     public String getId() { return id; }
     public String getName() { return name; }
-    public SinglyLinkedList_Imp<String> getBorrowedBookIds() { return borrowedBookIds; }
-    public SinglyLinkedList_Imp<String> getReservationQueue() { return reservationQueue; }
+    // Book ids for the I/O and GUI edges (a new list each call); the member keeps keys
+    public List<String> getBorrowedBookIds() { return bookIds(borrowedBookKeys); }
+    public List<String> getReservationQueue() { return bookIds(reservationKeys); }
+    public int getBorrowedCount() { return borrowedBookKeys.size(); }
+    public int getReservationCount() { return reservationKeys.size(); }
+
+    public boolean hasBorrowed(String bookId) {
+        int key = Dictionaries.BOOK_IDS.find(bookId);
+        return key >= 0 && borrowedBookKeys.indexOf(key) != -1;
+    }
+
+    private static List<String> bookIds(IntList keys) {
+        List<String> ids = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) ids.add(Dictionaries.BOOK_IDS.nameOf(keys.get(i)));
+        return ids;
+    }
 
     // ✅ Added Setters (to fix GUI errors)
     public void setId(String id) {
         this.id = id;
+        dirty = true;
     }
 
     public void setName(String name) {
         this.name = name;
+        dirty = true;
     }
 
+    // Dirty tracking
+    public boolean isDirty() { return dirty; }
+    public void markDirty() { dirty = true; }
+    public void clearDirty() { dirty = false; }
+
     // Borrow and reserve management
     public void borrowBook(String bookId) {
-        if (borrowedBookIds.indexOf(bookId) == -1) {
-            borrowedBookIds.addLast(bookId);
+        int key = Dictionaries.BOOK_IDS.keyOf(bookId);
+        if (borrowedBookKeys.indexOf(key) == -1) {
+            borrowedBookKeys.add(key);
+            dirty = true;
         }
         
     }
 
     public void returnBook(String bookId) {
-        borrowedBookIds.removeItem(bookId);
+        int key = Dictionaries.BOOK_IDS.find(bookId);
+        if (key >= 0 && borrowedBookKeys.remove(key)) dirty = true;
     }
 
     public void addToReservationQueue(String bookId) {
-        if (reservationQueue.indexOf(bookId) == -1) {
-            reservationQueue.addLast(bookId);
+        int key = Dictionaries.BOOK_IDS.keyOf(bookId);
+        if (reservationKeys.indexOf(key) == -1) {
+            reservationKeys.add(key);
+            dirty = true;
         }
     }
 
     public void removeFromReservationQueue(String bookId) {
-        reservationQueue.removeItem(bookId);
+        int key = Dictionaries.BOOK_IDS.find(bookId);
+        if (key >= 0 && reservationKeys.remove(key)) dirty = true;
     }
 
     @Override
     public String toString() {
-        return id + "," + name;
+        return LineTokenizer.quote(id) + "," + LineTokenizer.quote(name);
     }
 }
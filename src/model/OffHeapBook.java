@@ -0,0 +1,109 @@
+package model;
+
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+
+/**
+ * OffHeapBook - a Book whose fields live in an OffHeapCatalog row.
+ *
+ * The object itself only holds the catalog and the row number (plus the inherited
+ * dirty flag, observer and reservation queues, which stay null for most books), so
+ * a large catalog costs a few dozen bytes of heap per book instead of the strings,
+ * queues and arrays a plain Book carries. Getters decode the row on every call.
+ *
+ * Create instances with BookService.newBook() so the configured storage is used.
+ *
+ * The row is freed once the book is garbage collected (books decoded just to be
+ * compared or re-saved are dropped all the time), so the catalog reuses it. Every
+ * getter ends with a reachability fence: otherwise the book could be collected, and
+ * its row reused, while the getter is still reading it. The setters call back into
+ * the book after writing, which keeps it reachable the same way.
+ */
+public class OffHeapBook extends Book {
+
+    private static final Cleaner ROWS = Cleaner.create();
+
+    private final OffHeapCatalog catalog;
+    private final int row;
+
+    public OffHeapBook(OffHeapCatalog catalog, String id, String title, String author, String category) {
+        this.catalog = catalog;
+        int row = catalog.addRow(id, title, Dictionaries.AUTHORS.keyOf(author), Dictionaries.CATEGORIES.keyOf(category));
+        this.row = row;
+        ROWS.register(this, () -> catalog.freeRow(row)); // must not capture this
+    }
+
+    public int getRow() { return row; }
+
+    // Getters
+    @Override public String getId() {
+        try { return catalog.getString(row, OffHeapCatalog.ID); } finally { Reference.reachabilityFence(this); }
+    }
+    @Override public String getTitle() {
+        try { return catalog.getString(row, OffHeapCatalog.TITLE); } finally { Reference.reachabilityFence(this); }
+    }
+    @Override public int getAuthorCode() {
+        try { return catalog.getCode(row, OffHeapCatalog.AUTHOR); } finally { Reference.reachabilityFence(this); }
+    }
+    @Override public int getCategoryCode() {
+        try { return catalog.getCode(row, OffHeapCatalog.CATEGORY); } finally { Reference.reachabilityFence(this); }
+    }
+    @Override public boolean isAvailable() {
+        try { return catalog.isAvailable(row); } finally { Reference.reachabilityFence(this); }
+    }
+    @Override public String getCurrentBorrowerId() {
+        try { return catalog.getString(row, OffHeapCatalog.BORROWER_ID); } finally { Reference.reachabilityFence(this); }
+    }
+    @Override public String getCurrentBorrowerName() {
+        try { return catalog.getString(row, OffHeapCatalog.BORROWER_NAME); } finally { Reference.reachabilityFence(this); }
+    }
+    @Override public int getBorrowCount() {
+        try { return catalog.getBorrowCount(row); } finally { Reference.reachabilityFence(this); }
+    }
+
+    // Setters (write the row, then mark dirty like Book does)
+    @Override
+    public void setAvailable(boolean available) {
+        catalog.setAvailable(row, available);
+        markDirty();
+    }
+
+    @Override
+    public void setCurrentBorrower(String borrowerId, String borrowerName) {
+        catalog.setString(row, OffHeapCatalog.BORROWER_ID, borrowerId);
+        catalog.setString(row, OffHeapCatalog.BORROWER_NAME, borrowerName);
+        markDirty();
+    }
+
+    @Override
+    public void clearCurrentBorrower() {
+        catalog.setString(row, OffHeapCatalog.BORROWER_ID, null);
+        catalog.setString(row, OffHeapCatalog.BORROWER_NAME, null);
+        markDirty();
+    }
+
+    @Override
+    public void setTitle(String title) {
+        catalog.setString(row, OffHeapCatalog.TITLE, title);
+        textChanged();
+    }
+
+    @Override
+    public void setAuthor(String author) {
+        catalog.setCode(row, OffHeapCatalog.AUTHOR, Dictionaries.AUTHORS.keyOf(author));
+        textChanged();
+    }
+
+    @Override
+    public void setCategory(String category) {
+        catalog.setCode(row, OffHeapCatalog.CATEGORY, Dictionaries.CATEGORIES.keyOf(category));
+        textChanged();
+    }
+
+    @Override
+    public void setBorrowCount(int borrowCount) {
+        int old = catalog.getBorrowCount(row);
+        catalog.setBorrowCount(row, borrowCount);
+        borrowCountChanged(old);
+    }
+}
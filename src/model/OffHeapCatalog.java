@@ -0,0 +1,224 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * OffHeapCatalog - book rows and their strings kept in direct (off-heap) memory.
+ *
+ * Every book is one fixed-size row; OffHeapBook is a small view that reads and writes
+ * its row, so the title, author, etc. are not separate Java objects and the garbage
+ * collector never has to trace them. Row layout (ROW_BYTES bytes):
+ *
+ *   0  id            8  title         16 author        24 category
+ *   32 borrowerId    40 borrowerName  48 borrowCount   52 flags (bit 0 = available)
+ *
+ * author and category hold their Dictionaries code (they repeat across many books).
+ * The other string fields hold a reference into the string arena: (offset << 16) |
+ * length of the UTF-8 bytes, or NULL_REF for null. The arena is append-only: changing a
+ * string writes the new value at the end and counts the old bytes as garbage.
+ *
+ * freeRow() puts a row on a free list that addRow() takes from before growing, and
+ * counts its strings as garbage (OffHeapBook frees its row once the book is garbage
+ * collected). When garbage is more than half of the arena, and more than a chunk, the
+ * live strings are copied into a fresh arena and the old chunks are dropped.
+ *
+ * Rows and the arena grow in chunks. Every access locks the catalog: a compaction
+ * moves strings, so an unlocked reader could follow a reference into a dropped chunk.
+ */
+public class OffHeapCatalog {
+
+    public static final int ID = 0;
+    public static final int TITLE = 8;
+    public static final int AUTHOR = 16;
+    public static final int CATEGORY = 24;
+    public static final int BORROWER_ID = 32;
+    public static final int BORROWER_NAME = 40;
+    private static final int BORROW_COUNT = 48;
+    private static final int FLAGS = 52;
+    private static final int ROW_BYTES = 56;
+
+    private static final int FLAG_AVAILABLE = 1;
+    private static final int FLAG_FREE = 2;
+    private static final int[] STRING_FIELDS = {ID, TITLE, BORROWER_ID, BORROWER_NAME};
+    private static final long NULL_REF = -1L;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private static final int ROWS_PER_CHUNK = 1 << 16;        // 3.5MB of rows per chunk
+    private static final int ARENA_CHUNK_BITS = 24;           // 16MB of string bytes per chunk
+    private static final int ARENA_CHUNK_SIZE = 1 << ARENA_CHUNK_BITS;
+
+    private ByteBuffer[] rowChunks = new ByteBuffer[0];
+    private ByteBuffer[] arenaChunks = new ByteBuffer[0];
+    private int rowCount;                    // rows ever allocated, free ones included
+    private int[] freeRows = new int[16];
+    private int freeCount;
+    private int arenaPos = ARENA_CHUNK_SIZE; // forces the first chunk to be allocated
+    private long arenaBytes;                 // string bytes stored in the current arena
+    private long garbageBytes;               // of which no row refers to any more
+
+    // Adds a row for a new, available book (reusing a freed row if any) and returns its row number
+    public synchronized int addRow(String id, String title, int authorCode, int categoryCode) {
+        int row;
+        if (freeCount > 0) {
+            row = freeRows[--freeCount];
+        } else {
+            row = rowCount;
+            if (row % ROWS_PER_CHUNK == 0) {
+                rowChunks = append(rowChunks, ByteBuffer.allocateDirect(ROWS_PER_CHUNK * ROW_BYTES));
+            }
+            rowCount = row + 1;
+        }
+        ByteBuffer chunk = rowChunks[row / ROWS_PER_CHUNK];
+        int pos = (row % ROWS_PER_CHUNK) * ROW_BYTES;
+        chunk.putLong(pos + ID, store(id));
+        chunk.putLong(pos + TITLE, store(title));
+        chunk.putLong(pos + AUTHOR, authorCode);
+        chunk.putLong(pos + CATEGORY, categoryCode);
+        chunk.putLong(pos + BORROWER_ID, NULL_REF);
+        chunk.putLong(pos + BORROWER_NAME, NULL_REF);
+        chunk.putInt(pos + BORROW_COUNT, 0);
+        chunk.putInt(pos + FLAGS, FLAG_AVAILABLE);
+        return row;
+    }
+
+    // Returns a row to the free list; its strings become garbage. Freeing twice is a no-op.
+    public synchronized void freeRow(int row) {
+        ByteBuffer chunk = rowChunk(row);
+        int pos = rowPos(row);
+        if ((chunk.getInt(pos + FLAGS) & FLAG_FREE) != 0) return;
+        for (int field : STRING_FIELDS) {
+            garbageBytes += length(chunk.getLong(pos + field));
+            chunk.putLong(pos + field, NULL_REF);
+        }
+        chunk.putInt(pos + FLAGS, FLAG_FREE);
+        if (freeCount == freeRows.length) freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+        freeRows[freeCount++] = row;
+        compactArenaIfWasteful();
+    }
+
+    // Rows in use
+    public synchronized int getRowCount() {
+        return rowCount - freeCount;
+    }
+
+    // Direct memory in use (rows + string arena), for reporting
+    public synchronized long getOffHeapBytes() {
+        return (long) rowChunks.length * ROWS_PER_CHUNK * ROW_BYTES + (long) arenaChunks.length * ARENA_CHUNK_SIZE;
+    }
+
+    // ========== FIELDS ==========
+
+    // field is one of ID, TITLE, BORROWER_ID, BORROWER_NAME
+    public synchronized String getString(int row, int field) {
+        long ref = rowChunk(row).getLong(rowPos(row) + field);
+        return ref == NULL_REF ? null : new String(bytes(arenaChunks, ref), StandardCharsets.UTF_8);
+    }
+
+    public synchronized void setString(int row, int field, String value) {
+        ByteBuffer chunk = rowChunk(row);
+        int pos = rowPos(row) + field;
+        garbageBytes += length(chunk.getLong(pos));
+        chunk.putLong(pos, store(value));
+        compactArenaIfWasteful();
+    }
+
+    // field is AUTHOR or CATEGORY
+    public synchronized int getCode(int row, int field) {
+        return (int) rowChunk(row).getLong(rowPos(row) + field);
+    }
+
+    public synchronized void setCode(int row, int field, int code) {
+        rowChunk(row).putLong(rowPos(row) + field, code);
+    }
+
+    public synchronized int getBorrowCount(int row) {
+        return rowChunk(row).getInt(rowPos(row) + BORROW_COUNT);
+    }
+
+    public synchronized void setBorrowCount(int row, int borrowCount) {
+        rowChunk(row).putInt(rowPos(row) + BORROW_COUNT, borrowCount);
+    }
+
+    public synchronized boolean isAvailable(int row) {
+        return (rowChunk(row).getInt(rowPos(row) + FLAGS) & FLAG_AVAILABLE) != 0;
+    }
+
+    public synchronized void setAvailable(int row, boolean available) {
+        ByteBuffer chunk = rowChunk(row);
+        int pos = rowPos(row) + FLAGS;
+        int flags = chunk.getInt(pos);
+        chunk.putInt(pos, available ? flags | FLAG_AVAILABLE : flags & ~FLAG_AVAILABLE);
+    }
+
+    // ========== HELPERS ==========
+
+    private ByteBuffer rowChunk(int row) {
+        if (row < 0 || row >= rowCount) throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+        return rowChunks[row / ROWS_PER_CHUNK];
+    }
+
+    private static int rowPos(int row) {
+        return (row % ROWS_PER_CHUNK) * ROW_BYTES;
+    }
+
+    // Copies value into the arena and returns its reference (caller holds the lock)
+    private long store(String value) {
+        if (value == null) return NULL_REF;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String too long for the catalog: " + bytes.length + " bytes");
+        }
+        return store(bytes);
+    }
+
+    private long store(byte[] bytes) {
+        if (arenaPos + bytes.length > ARENA_CHUNK_SIZE) {
+            arenaChunks = append(arenaChunks, ByteBuffer.allocateDirect(ARENA_CHUNK_SIZE));
+            arenaPos = 0;
+        }
+        int chunk = arenaChunks.length - 1;
+        arenaChunks[chunk].put(arenaPos, bytes);
+        long offset = ((long) chunk << ARENA_CHUNK_BITS) | arenaPos;
+        arenaPos += bytes.length;
+        arenaBytes += bytes.length;
+        return (offset << 16) | bytes.length;
+    }
+
+    // Copies the strings of every row in use into a fresh arena once most of the old one is garbage
+    private void compactArenaIfWasteful() {
+        if (garbageBytes <= ARENA_CHUNK_SIZE || garbageBytes * 2 <= arenaBytes) return;
+        ByteBuffer[] old = arenaChunks;
+        arenaChunks = new ByteBuffer[0];
+        arenaPos = ARENA_CHUNK_SIZE;
+        arenaBytes = 0;
+        garbageBytes = 0;
+        for (int row = 0; row < rowCount; row++) {
+            ByteBuffer chunk = rowChunks[row / ROWS_PER_CHUNK];
+            int pos = rowPos(row);
+            if ((chunk.getInt(pos + FLAGS) & FLAG_FREE) != 0) continue;
+            for (int field : STRING_FIELDS) {
+                long ref = chunk.getLong(pos + field);
+                if (ref != NULL_REF) chunk.putLong(pos + field, store(bytes(old, ref)));
+            }
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer[] arena, long ref) {
+        long offset = ref >>> 16;
+        byte[] bytes = new byte[length(ref)];
+        arena[(int) (offset >>> ARENA_CHUNK_BITS)].get((int) (offset & (ARENA_CHUNK_SIZE - 1)), bytes);
+        return bytes;
+    }
+
+    private static int length(long ref) {
+        return ref == NULL_REF ? 0 : (int) (ref & MAX_STRING_BYTES);
+    }
+
+    private static ByteBuffer[] append(ByteBuffer[] chunks, ByteBuffer chunk) {
+        ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+        grown[chunks.length] = chunk;
+        return grown;
+    }
+}
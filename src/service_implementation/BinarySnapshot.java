@@ -0,0 +1,322 @@
+package service_implementation;
+
+import model.Book;
+import model.BorrowRecord;
+import model.Member;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BinarySnapshot - versioned binary image of books, members and borrow history.
+ *
+ * The file is read through FileChannel.map, so opening it costs almost nothing:
+ * records are only decoded when getBook(i)/getMember(i)/getRecord(i) asks for them.
+ * Text is stored once in a string table and referenced by index, and dates are
+ * stored as epoch days, so there is no String.split or LocalDate.parse on load and
+ * titles containing commas round-trip safely.
+ *
+ * Layout (big-endian):
+ *   header      : magic, version, counts and section offsets (HEADER_SIZE bytes)
+ *   string offs : int[stringCount + 1], offsets into the string data section
+ *   string data : UTF-8 bytes of every distinct string
+ *   books       : BOOK_SIZE bytes each
+ *                 id, title, author, category, flags, borrowerId, borrowerName,
+ *                 borrowCount, reservationStart, reservationCount
+ *   members     : MEMBER_SIZE bytes each
+ *                 id, name, borrowedStart, borrowedCount, reservationStart, reservationCount
+ *   records     : RECORD_SIZE bytes each
+ *                 bookId, memberId, memberName, borrowEpochDay, returnEpochDay
+ *   refs        : int pool of string indexes for the variable-length lists above
+ *                 (book reservations are stored as id/name pairs); every list
+ *                 start is an index into this int pool
+ *
+ * A string reference of -1 means null. A single mapping is limited to 2 GB.
+ *
+ * write() fills "file.tmp", forces it to disk and renames it over the file, so a crash
+ * leaves the previous snapshot in place and a reader never maps a half-written one.
+ */
+public class BinarySnapshot {
+
+    public static final int MAGIC = 0x4C4D5342; // "LMSB"
+    public static final int VERSION = 2; // 1 stored book reservation starts in pairs, not ints
+
+    private static final int HEADER_SIZE = 80;
+    private static final int BOOK_SIZE = 40;
+    private static final int MEMBER_SIZE = 24;
+    private static final int RECORD_SIZE = 20;
+
+    private static final int FLAG_AVAILABLE = 1;
+    private static final int NO_STRING = -1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final MappedByteBuffer buffer;
+    private final int stringCount;
+    private final int bookCount;
+    private final int memberCount;
+    private final int recordCount;
+    private final int stringOffsetsPos;
+    private final int stringDataPos;
+    private final int booksPos;
+    private final int membersPos;
+    private final int recordsPos;
+    private final int refsPos;
+    private final String[] stringCache; // strings are decoded on first use
+
+    private BinarySnapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a library snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        stringCount = buffer.getInt(8);
+        bookCount = buffer.getInt(12);
+        memberCount = buffer.getInt(16);
+        recordCount = buffer.getInt(20);
+        stringOffsetsPos = (int) buffer.getLong(32);
+        stringDataPos = (int) buffer.getLong(40);
+        booksPos = (int) buffer.getLong(48);
+        membersPos = (int) buffer.getLong(56);
+        recordsPos = (int) buffer.getLong(64);
+        refsPos = (int) buffer.getLong(72);
+        stringCache = new String[stringCount];
+    }
+
+    // ========== READING ==========
+    public static BinarySnapshot open(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(new File(filename).toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new BinarySnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getBookCount() { return bookCount; }
+    public int getMemberCount() { return memberCount; }
+    public int getRecordCount() { return recordCount; }
+
+    public Book getBook(int index) {
+        checkIndex(index, bookCount);
+        int pos = booksPos + index * BOOK_SIZE;
+        Book book = BookService.newBook(string(buffer.getInt(pos)), string(buffer.getInt(pos + 4)),
+                string(buffer.getInt(pos + 8)), string(buffer.getInt(pos + 12)));
+        book.setAvailable((buffer.getInt(pos + 16) & FLAG_AVAILABLE) != 0);
+        String borrowerId = string(buffer.getInt(pos + 20));
+        if (borrowerId != null) {
+            book.setCurrentBorrower(borrowerId, string(buffer.getInt(pos + 24)));
+        }
+        book.setBorrowCount(buffer.getInt(pos + 28));
+        int start = buffer.getInt(pos + 32);
+        int count = buffer.getInt(pos + 36);
+        for (int i = 0; i < count; i++) {
+            int ref = refsPos + (start + 2 * i) * 4; // start is an int index, each reservation two ints
+            book.addToReservationQueue(string(buffer.getInt(ref)), string(buffer.getInt(ref + 4)));
+        }
+        return book;
+    }
+
+    public Member getMember(int index) {
+        checkIndex(index, memberCount);
+        int pos = membersPos + index * MEMBER_SIZE;
+        Member member = new Member(string(buffer.getInt(pos)), string(buffer.getInt(pos + 4)));
+        int borrowedStart = buffer.getInt(pos + 8);
+        int borrowedCount = buffer.getInt(pos + 12);
+        for (int i = 0; i < borrowedCount; i++) {
+            member.borrowBook(string(buffer.getInt(refsPos + (borrowedStart + i) * 4)));
+        }
+        int resStart = buffer.getInt(pos + 16);
+        int resCount = buffer.getInt(pos + 20);
+        for (int i = 0; i < resCount; i++) {
+            member.addToReservationQueue(string(buffer.getInt(refsPos + (resStart + i) * 4)));
+        }
+        return member;
+    }
+
+    public BorrowRecord getRecord(int index) {
+        checkIndex(index, recordCount);
+        int pos = recordsPos + index * RECORD_SIZE;
+        BorrowRecord record = new BorrowRecord(string(buffer.getInt(pos)), string(buffer.getInt(pos + 4)),
+                string(buffer.getInt(pos + 8)), LocalDate.ofEpochDay(buffer.getInt(pos + 12)));
+        int returnDay = buffer.getInt(pos + 16);
+        if (returnDay != NO_DATE) {
+            record.setReturnDate(LocalDate.ofEpochDay(returnDay));
+        }
+        return record;
+    }
+
+    public List<Book> loadBooks() {
+        List<Book> books = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) books.add(getBook(i));
+        return books;
+    }
+
+    public List<Member> loadMembers() {
+        List<Member> members = new ArrayList<>(memberCount);
+        for (int i = 0; i < memberCount; i++) members.add(getMember(i));
+        return members;
+    }
+
+    public List<BorrowRecord> loadBorrowRecords() {
+        List<BorrowRecord> records = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) records.add(getRecord(i));
+        return records;
+    }
+
+    private String string(int ref) {
+        if (ref == NO_STRING) return null;
+        String s = stringCache[ref];
+        if (s == null) {
+            int start = buffer.getInt(stringOffsetsPos + ref * 4);
+            int end = buffer.getInt(stringOffsetsPos + (ref + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            buffer.get(stringDataPos + start, bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+            stringCache[ref] = s;
+        }
+        return s;
+    }
+
+    private static void checkIndex(int index, int count) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+    }
+
+    // ========== WRITING ==========
+    public static void write(String filename, List<Book> books, List<Member> members, List<BorrowRecord> records)
+            throws IOException {
+        StringTable strings = new StringTable();
+        List<Integer> refs = new ArrayList<>();
+
+        int[] bookRows = new int[books.size() * (BOOK_SIZE / 4)];
+        int r = 0;
+        for (Book b : books) {
+            bookRows[r++] = strings.ref(b.getId());
+            bookRows[r++] = strings.ref(b.getTitle());
+            bookRows[r++] = strings.ref(b.getAuthor());
+            bookRows[r++] = strings.ref(b.getCategory());
+            bookRows[r++] = b.isAvailable() ? FLAG_AVAILABLE : 0;
+            bookRows[r++] = strings.ref(b.getCurrentBorrowerId());
+            bookRows[r++] = strings.ref(b.getCurrentBorrowerName());
+            bookRows[r++] = b.getBorrowCount();
+            bookRows[r++] = refs.size(); // int index into refs, like the member lists
+            bookRows[r++] = b.getReservationCount();
+            if (!b.hasReservations()) continue; // don't create empty queues
+            Iterator<String> names = b.getReservationQueueNames().iterator();
+            for (String id : b.getReservationQueue()) {
+                refs.add(strings.ref(id));
+                refs.add(strings.ref(names.next()));
+            }
+        }
+
+        int[] memberRows = new int[members.size() * (MEMBER_SIZE / 4)];
+        r = 0;
+        for (Member m : members) {
+            memberRows[r++] = strings.ref(m.getId());
+            memberRows[r++] = strings.ref(m.getName());
+            r = addRefs(m.getBorrowedBookIds(), memberRows, r, strings, refs);
+            r = addRefs(m.getReservationQueue(), memberRows, r, strings, refs);
+        }
+
+        int[] recordRows = new int[records.size() * (RECORD_SIZE / 4)];
+        r = 0;
+        for (BorrowRecord br : records) {
+            recordRows[r++] = strings.ref(br.getBookId());
+            recordRows[r++] = strings.ref(br.getMemberId());
+            recordRows[r++] = strings.ref(br.getMemberName());
+            recordRows[r++] = (int) br.getBorrowDate().toEpochDay();
+            recordRows[r++] = br.getReturnDate() != null ? (int) br.getReturnDate().toEpochDay() : NO_DATE;
+        }
+
+        long stringOffsetsPos = HEADER_SIZE;
+        long stringDataPos = stringOffsetsPos + 4L * (strings.size() + 1);
+        long booksPos = stringDataPos + strings.byteLength;
+        long membersPos = booksPos + 4L * bookRows.length;
+        long recordsPos = membersPos + 4L * memberRows.length;
+        long refsPos = recordsPos + 4L * recordRows.length;
+        long totalSize = refsPos + 4L * refs.size();
+        if (totalSize > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot too large to map: " + totalSize + " bytes");
+        }
+
+        Path target = new File(filename).toPath();
+        Path temp = new File(filename + ".tmp").toPath();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, totalSize);
+            out.putInt(MAGIC).putInt(VERSION).putInt(strings.size())
+               .putInt(books.size()).putInt(members.size()).putInt(records.size())
+               .putInt(refs.size()).putInt(0);
+            out.putLong(stringOffsetsPos).putLong(stringDataPos).putLong(booksPos)
+               .putLong(membersPos).putLong(recordsPos).putLong(refsPos);
+
+            int offset = 0;
+            for (byte[] bytes : strings.encoded) {
+                out.putInt(offset);
+                offset += bytes.length;
+            }
+            out.putInt(offset);
+            for (byte[] bytes : strings.encoded) out.put(bytes);
+            for (int v : bookRows) out.putInt(v);
+            for (int v : memberRows) out.putInt(v);
+            for (int v : recordRows) out.putInt(v);
+            for (int v : refs) out.putInt(v);
+            out.force();
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static int addRefs(List<String> list, int[] rows, int r,
+                               StringTable strings, List<Integer> refs) {
+        rows[r++] = refs.size();
+        rows[r++] = list.size();
+        for (String item : list) {
+            refs.add(strings.ref(item));
+        }
+        return r;
+    }
+
+    // Deduplicating string table used while writing
+    private static class StringTable {
+        final Map<String, Integer> index = new HashMap<>();
+        final List<byte[]> encoded = new ArrayList<>();
+        long byteLength = 0;
+
+        int ref(String s) {
+            if (s == null) return NO_STRING;
+            Integer existing = index.get(s);
+            if (existing != null) return existing;
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            int ref = encoded.size();
+            encoded.add(bytes);
+            index.put(s, ref);
+            byteLength += bytes.length;
+            return ref;
+        }
+
+        int size() { return encoded.size(); }
+    }
+}
@@ -0,0 +1,208 @@
+package service_implementation;
+
+import model.Book;
+import model.Dictionaries;
+import utils.InvertedIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * BookQuery - several conditions on books combined with AND, planned from index statistics.
+ *
+ * Built from BookService.query():
+ *   bookService.query().categoryIs("Dystopian").available().authorContains("Roth").list()
+ *
+ * Planning: each condition estimates how many books it matches. Conditions the
+ * search index can answer (title, author, category, keywords) take the estimate from
+ * the index itself: exact counts from the author/category code postings, upper bounds
+ * from the trigram and keyword postings. Availability and borrow counts have no index
+ * and use fixed guesses (1/2 and 1/3 of the catalog). The indexed condition with the
+ * lowest estimate drives the query: only the books it returns are visited, and each
+ * one is streamed through the remaining conditions, most selective first. Without an
+ * indexed condition the plan scans the whole list; an estimate of 0 (always a safe
+ * bound) ends the query before any book is read.
+ *
+ * explain() prints the plan without running it. Results come back in list order,
+ * like the other BookService searches. A null text argument matches no book.
+ */
+public class BookQuery {
+
+    private static final class Condition {
+        final String description;
+        final Predicate<Book> test;
+        final IntUnaryOperator estimate;   // total books -> estimated matches
+        final Supplier<List<Book>> lookup; // matching books from an index, or null
+        final boolean guessed;             // estimate is a fixed fraction, not index statistics
+        int estimated;
+
+        Condition(String description, Predicate<Book> test, IntUnaryOperator estimate,
+                  Supplier<List<Book>> lookup, boolean guessed) {
+            this.description = description;
+            this.test = test;
+            this.estimate = estimate;
+            this.lookup = lookup;
+            this.guessed = guessed;
+        }
+    }
+
+    private final List<Book> books;
+    private final BookSearchIndex index;
+    private final List<Condition> conditions = new ArrayList<>();
+
+    BookQuery(List<Book> books, BookSearchIndex index) {
+        this.books = books;
+        this.index = index;
+    }
+
+    // ========== CONDITIONS ==========
+
+    // Title contains text, ignoring case (same as searchBooksByTitle)
+    public BookQuery titleContains(String text) {
+        if (text == null) return nothing("title contains null");
+        String key = text.toLowerCase();
+        return add(new Condition("title contains \"" + text + "\"",
+                b -> b.getTitle() != null && b.getTitle().toLowerCase().contains(key),
+                total -> index.estimateTitle(text),
+                () -> index.searchTitle(text), false));
+    }
+
+    // Author contains text, ignoring case (same as searchBooksByAuthor)
+    public BookQuery authorContains(String text) {
+        if (text == null) return nothing("author contains null");
+        String key = text.toLowerCase();
+        return authorCodes("author contains \"" + text + "\"", value -> value.toLowerCase().contains(key));
+    }
+
+    // Author is name, ignoring case
+    public BookQuery authorIs(String name) {
+        if (name == null) return nothing("author = null");
+        return authorCodes("author = \"" + name + "\"", value -> value.equalsIgnoreCase(name));
+    }
+
+    // Category contains text, ignoring case (same as searchBooksByCategory)
+    public BookQuery categoryContains(String text) {
+        if (text == null) return nothing("category contains null");
+        String key = text.toLowerCase();
+        return categoryCodes("category contains \"" + text + "\"", value -> value.toLowerCase().contains(key));
+    }
+
+    // Category is name, ignoring case
+    public BookQuery categoryIs(String name) {
+        if (name == null) return nothing("category = null");
+        return categoryCodes("category = \"" + name + "\"", value -> value.equalsIgnoreCase(name));
+    }
+
+    // Every word of query appears as a whole word in title, author or category (same as searchBooks)
+    public BookQuery keywords(String query) {
+        if (query == null) return nothing("keywords null");
+        List<String> words = Arrays.asList(InvertedIndex.tokenize(query));
+        return add(new Condition("keywords \"" + query + "\"",
+                b -> !words.isEmpty()
+                        && Arrays.asList(InvertedIndex.tokenize(b.getTitle(), b.getAuthor(), b.getCategory())).containsAll(words),
+                total -> index.estimateKeywords(query),
+                () -> index.searchKeywords(query), false));
+    }
+
+    public BookQuery available() {
+        return add(new Condition("available", Book::isAvailable, total -> total / 2, null, true));
+    }
+
+    public BookQuery borrowed() {
+        return add(new Condition("borrowed", b -> !b.isAvailable(), total -> total / 2, null, true));
+    }
+
+    public BookQuery borrowCountAtLeast(int min) {
+        return add(new Condition("borrow count >= " + min, b -> b.getBorrowCount() >= min,
+                total -> total / 3, null, true));
+    }
+
+    public BookQuery borrowCountAtMost(int max) {
+        return add(new Condition("borrow count <= " + max, b -> b.getBorrowCount() <= max,
+                total -> total / 3, null, true));
+    }
+
+    // ========== EXECUTION ==========
+
+    // Books matching every condition, in list order (every book if there is no condition)
+    public List<Book> list() {
+        Condition driver = plan();
+        List<Book> result = new ArrayList<>();
+        for (Condition c : conditions) {
+            if (c.estimated == 0 && !c.guessed) return result;
+        }
+        List<Book> source = driver == null ? new ArrayList<>(books) : driver.lookup.get();
+        candidates:
+        for (Book b : source) {
+            for (Condition c : conditions) {
+                if (c != driver && !c.test.test(b)) continue candidates;
+            }
+            result.add(b);
+        }
+        return result;
+    }
+
+    /**
+     * The plan list() would run, one line per step, e.g.
+     *   index  author contains "Roth"     ~3 of 1200 books
+     *   filter category = "Dystopian"     ~40 of 1200 books
+     *   filter available                  ~600 of 1200 books (guess)
+     */
+    public String explain() {
+        Condition driver = plan();
+        int total = index.size();
+        StringBuilder sb = new StringBuilder();
+        if (driver == null) sb.append("scan   all books (").append(total).append(")\n");
+        for (Condition c : conditions) {
+            sb.append(String.format("%-6s %-36s ~%d of %d books%s%n",
+                    c == driver ? "index" : "filter", c.description, c.estimated, total, c.guessed ? " (guess)" : ""));
+        }
+        return sb.toString();
+    }
+
+    // ========== PLANNING ==========
+
+    /**
+     * Estimates every condition, orders the conditions by estimate (most selective
+     * first) and returns the indexed one with the lowest estimate (null: scan).
+     */
+    private Condition plan() {
+        int total = index.size();
+        for (Condition c : conditions) c.estimated = c.estimate.applyAsInt(total);
+        conditions.sort((a, b) -> Integer.compare(a.estimated, b.estimated)); // stable: ties keep call order
+        for (Condition c : conditions) {
+            if (c.lookup != null) return c;
+        }
+        return null;
+    }
+
+    private BookQuery authorCodes(String description, Predicate<String> nameTest) {
+        BitSet codes = BookService.matchingCodes(Dictionaries.AUTHORS, nameTest);
+        return add(new Condition(description,
+                b -> b.getAuthorCode() >= 0 && codes.get(b.getAuthorCode()),
+                total -> index.countAuthorCodes(codes),
+                () -> index.searchAuthorCodes(codes), false));
+    }
+
+    private BookQuery categoryCodes(String description, Predicate<String> nameTest) {
+        BitSet codes = BookService.matchingCodes(Dictionaries.CATEGORIES, nameTest);
+        return add(new Condition(description,
+                b -> b.getCategoryCode() >= 0 && codes.get(b.getCategoryCode()),
+                total -> index.countCategoryCodes(codes),
+                () -> index.searchCategoryCodes(codes), false));
+    }
+
+    private BookQuery nothing(String description) {
+        return add(new Condition(description, b -> false, total -> 0, null, false));
+    }
+
+    private BookQuery add(Condition condition) {
+        conditions.add(condition);
+        return this;
+    }
+}
@@ -0,0 +1,273 @@
+package service_implementation;
+
+import model.Book;
+import model.Dictionaries;
+import utils.BKTree;
+import utils.HashMap_Imp;
+import utils.InvertedIndex;
+import utils.PostingList;
+import utils.RadixTrie;
+import utils.TrigramIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * BookSearchIndex - text indexes over the books of one BookService.
+ *
+ * Each book gets a dense document id when it is added; ids are handed out in order
+ * and not reused until rebuild(), so results in id order come back in the order the
+ * books sit in BookService's list. Indexes kept per document:
+ *  - keywords: every token of title, author and category (whole-word search)
+ *  - titles:   trigrams of the title (exact substring search)
+ *  - authors / categories: doc ids per dictionary code, so a set of matching codes
+ *    turns into books without looking at the others
+ *  - vocabulary: BK-tree of every keyword ever indexed, for typo-tolerant search
+ *  - prefixes: radix trie over lowercase titles and authors, each node caching its
+ *    most popular books, for search-box autocomplete
+ *
+ * BookService keeps it current from addBook / removeBook / replaceAll and from the
+ * Book observer callbacks. All methods lock the index.
+ */
+public class BookSearchIndex {
+
+    private static final int SUGGESTIONS = 10; // books cached per trie node
+
+    private final List<Book> docs = new ArrayList<>();                 // doc id -> book (null once removed)
+    private HashMap_Imp<Book, Integer> docIds = new HashMap_Imp<>();
+    private InvertedIndex keywords = new InvertedIndex();
+    private BKTree vocabulary = new BKTree();                          // words of removed books linger until rebuild()
+    private TrigramIndex titles = new TrigramIndex();
+    private PostingList[] byAuthor = new PostingList[64];              // author code -> doc ids
+    private PostingList[] byCategory = new PostingList[16];            // category code -> doc ids
+    private int[] docAuthor = new int[64];                             // code each doc is posted under
+    private int[] docCategory = new int[64];
+    private final Comparator<Book> ranking;
+    private RadixTrie<Book> prefixes;
+
+    // ranking orders autocomplete suggestions, greatest first
+    public BookSearchIndex(Comparator<Book> ranking) {
+        this.ranking = ranking;
+        this.prefixes = new RadixTrie<>(SUGGESTIONS, ranking);
+    }
+
+    public synchronized void add(Book book) {
+        if (docIds.containsKey(book)) return;
+        int doc = docs.size();
+        docs.add(book);
+        docIds.put(book, doc);
+        if (doc >= docAuthor.length) {
+            docAuthor = Arrays.copyOf(docAuthor, docAuthor.length * 2);
+            docCategory = Arrays.copyOf(docCategory, docCategory.length * 2);
+        }
+        docAuthor[doc] = -1;
+        docCategory[doc] = -1;
+        index(doc, book);
+    }
+
+    public synchronized void remove(Book book) {
+        Integer doc = docIds.remove(book);
+        if (doc == null) return;
+        docs.set(doc, null);
+        unprefix(doc, book);
+        keywords.remove(doc);
+        titles.remove(doc);
+        byAuthor = post(byAuthor, docAuthor[doc], -1, doc);
+        byCategory = post(byCategory, docCategory[doc], -1, doc);
+    }
+
+    // Re-indexes a book whose title, author or category changed
+    public synchronized void update(Book book) {
+        Integer doc = docIds.get(book);
+        if (doc == null) return;
+        index(doc, book);
+    }
+
+    // Re-ranks a book's suggestions after its borrow count changed
+    public synchronized void rescore(Book book) {
+        Integer doc = docIds.get(book);
+        if (doc == null) return;
+        String title = titles.text(doc);
+        String author = authorKey(docAuthor[doc]);
+        if (title != null) prefixes.update(title, book);
+        if (author != null) prefixes.update(author, book);
+    }
+
+    // Drops everything and indexes books from doc id 0
+    public synchronized void rebuild(List<Book> books) {
+        docs.clear();
+        docIds = new HashMap_Imp<>(books.size());
+        keywords = new InvertedIndex();
+        vocabulary = new BKTree();
+        titles = new TrigramIndex();
+        prefixes = new RadixTrie<>(SUGGESTIONS, ranking);
+        byAuthor = new PostingList[byAuthor.length];
+        byCategory = new PostingList[byCategory.length];
+        for (Book b : books) add(b);
+    }
+
+    /**
+     * Books whose title, author or category contain every word of query as a whole
+     * word (case-insensitive), in list order.
+     */
+    public synchronized List<Book> searchKeywords(String query) {
+        return books(keywords.search(InvertedIndex.tokenize(query)));
+    }
+
+    // Books whose title contains text, ignoring case (same as toLowerCase().contains), in list order
+    public synchronized List<Book> searchTitle(String text) {
+        return books(titles.search(text));
+    }
+
+    // Books whose author code is in codes, in list order
+    public synchronized List<Book> searchAuthorCodes(BitSet codes) {
+        return books(union(byAuthor, codes));
+    }
+
+    // Books whose category code is in codes, in list order
+    public synchronized List<Book> searchCategoryCodes(BitSet codes) {
+        return books(union(byCategory, codes));
+    }
+
+    // ========== STATISTICS (for BookQuery's planner) ==========
+
+    // Number of books indexed
+    public synchronized int size() {
+        return docIds.size();
+    }
+
+    // Upper bound on searchKeywords(query).size(): the rarest word's document count
+    public synchronized int estimateKeywords(String query) {
+        String[] tokens = InvertedIndex.tokenize(query);
+        if (tokens.length == 0) return 0;
+        int min = Integer.MAX_VALUE;
+        for (String token : tokens) min = Math.min(min, keywords.count(token));
+        return min;
+    }
+
+    // Upper bound on searchTitle(text).size()
+    public synchronized int estimateTitle(String text) {
+        return titles.estimate(text);
+    }
+
+    // Exact searchAuthorCodes(codes).size(): each book is posted under one author code
+    public synchronized int countAuthorCodes(BitSet codes) {
+        return count(byAuthor, codes);
+    }
+
+    // Exact searchCategoryCodes(codes).size()
+    public synchronized int countCategoryCodes(BitSet codes) {
+        return count(byCategory, codes);
+    }
+
+    /**
+     * Typo-tolerant keyword search: books that have, for every word of query, some
+     * title/author/category word within maxDistance edits of it. Ranked by the summed
+     * distance (closest first), then by popularity. Only the vocabulary's BK-tree is
+     * searched with edit distance; books come from the postings of the words it finds.
+     */
+    public synchronized List<Book> searchFuzzy(String query, int maxDistance) {
+        String[] tokens = InvertedIndex.tokenize(query);
+        if (tokens.length == 0) return new ArrayList<>();
+        HashMap_Imp<Integer, Integer> scores = null; // doc -> summed distance so far
+        for (String token : tokens) {
+            HashMap_Imp<Integer, Integer> next = new HashMap_Imp<>();
+            for (BKTree.Match match : vocabulary.search(token, maxDistance)) {
+                for (int doc : keywords.search(new String[] { match.word })) {
+                    Integer sofar = scores == null ? Integer.valueOf(0) : scores.get(doc);
+                    if (sofar == null) continue; // missed an earlier word
+                    Integer best = next.get(doc);
+                    if (best == null || sofar + match.distance < best) next.put(doc, sofar + match.distance);
+                }
+            }
+            scores = next;
+            if (scores.isEmpty()) break;
+        }
+
+        List<Integer> matches = new ArrayList<>(scores.size());
+        for (Integer doc : scores.keys()) matches.add(doc);
+        HashMap_Imp<Integer, Integer> score = scores;
+        matches.sort(Comparator.<Integer>comparingInt(score::get)
+                .thenComparing((a, b) -> ranking.compare(docs.get(b), docs.get(a)))
+                .thenComparingInt(doc -> doc));
+        List<Book> result = new ArrayList<>(matches.size());
+        for (Integer doc : matches) result.add(docs.get(doc));
+        return result;
+    }
+
+    /**
+     * Most popular books (up to limit, at most 10) whose title or author starts with
+     * prefix, ignoring case. Read from the trie node of the prefix, so the cost does
+     * not grow with the number of matching books.
+     */
+    public synchronized List<Book> suggest(String prefix, int limit) {
+        return prefixes.suggest(prefix.toLowerCase(), limit);
+    }
+
+    // ========== HELPERS ==========
+
+    private void index(int doc, Book book) {
+        unprefix(doc, book);
+        String title = book.getTitle();
+        String author = book.getAuthor();
+        if (title != null) prefixes.insert(title.toLowerCase(), book);
+        if (author != null) prefixes.insert(author.toLowerCase(), book);
+        String[] tokens = InvertedIndex.tokenize(book.getTitle(), book.getAuthor(), book.getCategory());
+        keywords.update(doc, tokens);
+        for (String token : tokens) vocabulary.add(token);
+        titles.update(doc, book.getTitle());
+        byAuthor = post(byAuthor, docAuthor[doc], book.getAuthorCode(), doc);
+        docAuthor[doc] = book.getAuthorCode();
+        byCategory = post(byCategory, docCategory[doc], book.getCategoryCode(), doc);
+        docCategory[doc] = book.getCategoryCode();
+    }
+
+    // Takes book out of the trie under the keys it was indexed with last time
+    private void unprefix(int doc, Book book) {
+        String title = titles.text(doc);
+        String author = authorKey(docAuthor[doc]);
+        if (title != null) prefixes.remove(title, book);
+        if (author != null) prefixes.remove(author, book);
+    }
+
+    private static String authorKey(int code) {
+        String name = code < 0 ? null : Dictionaries.AUTHORS.nameOf(code);
+        return name == null ? null : name.toLowerCase();
+    }
+
+    // Moves doc from the list of oldCode to the list of newCode (-1 = none); returns the (grown) array
+    private static PostingList[] post(PostingList[] lists, int oldCode, int newCode, int doc) {
+        if (oldCode == newCode) return lists;
+        if (oldCode >= 0 && oldCode < lists.length && lists[oldCode] != null) lists[oldCode].remove(doc);
+        if (newCode < 0) return lists;
+        if (newCode >= lists.length) lists = Arrays.copyOf(lists, Math.max(newCode + 1, lists.length * 2));
+        if (lists[newCode] == null) lists[newCode] = new PostingList();
+        lists[newCode].add(doc);
+        return lists;
+    }
+
+    private static int count(PostingList[] lists, BitSet codes) {
+        int total = 0;
+        for (int code = codes.nextSetBit(0); code >= 0 && code < lists.length; code = codes.nextSetBit(code + 1)) {
+            if (lists[code] != null) total += lists[code].size();
+        }
+        return total;
+    }
+
+    private static int[] union(PostingList[] lists, BitSet codes) {
+        List<PostingList> selected = new ArrayList<>();
+        for (int code = codes.nextSetBit(0); code >= 0 && code < lists.length; code = codes.nextSetBit(code + 1)) {
+            if (lists[code] != null) selected.add(lists[code]);
+        }
+        return PostingList.union(selected);
+    }
+
+    private List<Book> books(int[] matches) {
+        List<Book> result = new ArrayList<>(matches.length);
+        for (int doc : matches) result.add(docs.get(doc));
+        return result;
+    }
+}
@@ -1,13 +1,22 @@
 package service_implementation;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Predicate;
 
 import model.Book;
-import utils.MaxHeap_Imp;
-import utils.Queue_Imp;
+import model.BookObserver;
+import model.Dictionaries;
+import model.OffHeapBook;
+import model.OffHeapCatalog;
+import utils.HashMap_Imp;
+import utils.IdDictionary;
+import utils.IndexedMaxHeap;
+import utils.TopK;
 
 /**
  * BookService - central book manager used by Test_Main.
@@ -16,17 +25,60 @@ import utils.Queue_Imp;
  *  - maintain in-memory list of books
  *  - basic search/sort utilities used by Test_Main
  *  - reservation add/cancel (works with Queue_Imp)
- *  - getMostBorrowedBooks(int n) using MaxHeap_Imp to pick top items
+ *  - getMostBorrowedBooks(int n) from a live IndexedMaxHeap of books by borrow count
+ *  - suggest(prefix, limit): title/author autocomplete ranked by borrow count
+ *  - searchBooksFuzzy(query, maxDistance): keyword search that tolerates typos
+ *  - query(): multi-condition lookups planned from the search index statistics
  *
  * Note: borrow counts are read from Book.getBorrowCount().
- * Make sure your BorrowService increments Book.incrementBorrowCount() when a borrow succeeds.
+ * BookService is the observer of every book it holds, so Book.incrementBorrowCount()
+ * moves the book up the popularity heap right away. Change the set of books through
+ * addBook / removeBook / replaceAll (not getAllBooks()) so the heap and the search
+ * index stay in step. Title/author/category setters re-index the book the same way.
+ *
+ * Storage: books are created through newBook(), which returns a plain Book, or, with
+ * -Dlibrary.catalog=offheap, an OffHeapBook whose fields live in a shared direct-memory
+ * OffHeapCatalog. Off-heap keeps very large catalogs out of the garbage collector's
+ * way, at the cost of decoding a String on every getter call. searchBookById goes
+ * through an id index, so a lookup decodes nothing instead of every book's id.
  */
-public class BookService {
+public class BookService implements BookObserver {
+
+    // Most borrowed first; ties go to the lower id so results are stable
+    private static final Comparator<Book> BY_POPULARITY = Comparator.comparingInt(Book::getBorrowCount)
+            .thenComparing(Book::getId, Collections.reverseOrder(String.CASE_INSENSITIVE_ORDER));
+
+    // Edits allowed per word by searchBooksFuzzy(query)
+    private static final int FUZZY_DISTANCE = Integer.getInteger("library.fuzzyDistance", 2);
+
+    // "heap" (default) or "offheap"
+    private static final boolean OFF_HEAP = "offheap".equalsIgnoreCase(System.getProperty("library.catalog", "heap"));
+    private static OffHeapCatalog catalog; // created with the first off-heap book
 
     private final List<Book> books;
+    private HashMap_Imp<String, Book> byId = new HashMap_Imp<>(); // lowercase id -> first book in list order
+    private final IndexedMaxHeap<Book> popularity; // guarded by itself
+    private final BookSearchIndex searchIndex = new BookSearchIndex(BY_POPULARITY);
 
     public BookService() {
         this.books = new ArrayList<>();
+        this.popularity = new IndexedMaxHeap<>(BY_POPULARITY);
+    }
+
+    // Creates a book in the configured storage; loaders and the GUI create books through here
+    public static Book newBook(String id, String title, String author, String category) {
+        if (!OFF_HEAP) return new Book(id, title, author, category);
+        return new OffHeapBook(offHeapCatalog(), id, title, author, category);
+    }
+
+    public static boolean isOffHeap() {
+        return OFF_HEAP;
+    }
+
+    // The shared catalog behind every OffHeapBook (null in heap mode)
+    public static synchronized OffHeapCatalog offHeapCatalog() {
+        if (OFF_HEAP && catalog == null) catalog = new OffHeapCatalog();
+        return catalog;
     }
 
     // --- basic accessors used by Test_Main ---
@@ -37,29 +89,95 @@ public class BookService {
     public boolean addBook(Book book) {
         if (searchBookById(book.getId()) != null) return false; // already exists
         books.add(book);
+        byId.put(book.getId().toLowerCase(), book);
+        book.setObserver(this);
+        synchronized (popularity) {
+            popularity.insert(book);
+        }
+        searchIndex.add(book);
         return true;
     }
 
     public boolean removeBook(String bookId) {
+        Book b = searchBookById(bookId);
+        if (b == null) return false;
         Iterator<Book> it = books.iterator();
+        while (it.next() != b) {
+            // walk to the book
+        }
+        it.remove();
+        // A loaded file can hold the id twice; the next one takes its place in the index
+        String key = bookId.toLowerCase();
+        byId.remove(key);
         while (it.hasNext()) {
-            Book b = it.next();
-            if (b.getId().equalsIgnoreCase(bookId)) {
-                it.remove();
-                return true;
+            Book next = it.next();
+            if (next.getId().equalsIgnoreCase(bookId)) {
+                byId.put(key, next);
+                break;
             }
         }
-        return false;
+        if (b.getObserver() == this) b.setObserver(null);
+        synchronized (popularity) {
+            popularity.remove(b);
+        }
+        searchIndex.remove(b);
+        return true;
+    }
+
+    /**
+     * Replaces every book (e.g. after reloading books.txt) and rebuilds the
+     * popularity heap and the search index.
+     */
+    public void replaceAll(List<Book> newBooks) {
+        for (Book b : books) {
+            if (b.getObserver() == this) b.setObserver(null);
+        }
+        books.clear();
+        books.addAll(newBooks);
+        rebuildIndexes();
+    }
+
+    private void rebuildIndexes() {
+        HashMap_Imp<String, Book> ids = new HashMap_Imp<>(books.size());
+        for (Book b : books) {
+            b.setObserver(this);
+            String key = b.getId().toLowerCase();
+            if (!ids.containsKey(key)) ids.put(key, b);
+        }
+        byId = ids;
+        synchronized (popularity) {
+            popularity.buildHeap(books);
+        }
+        searchIndex.rebuild(books);
+    }
+
+    // Book.incrementBorrowCount() / setBorrowCount() land here
+    @Override
+    public void borrowCountChanged(Book book, int oldCount) {
+        synchronized (popularity) {
+            if (!popularity.contains(book)) return;
+            if (book.getBorrowCount() > oldCount) popularity.increaseKey(book);
+            else popularity.decreaseKey(book);
+        }
+        searchIndex.rescore(book);
+    }
+
+    // Book.setTitle() / setAuthor() / setCategory() land here
+    @Override
+    public void textChanged(Book book) {
+        searchIndex.update(book);
     }
  // Add this method to BookService.java class
 
     /**
-     * Sorts the books list alphabetically by title (A-Z)
-     * This modifies the internal list permanently
+     * Returns the books sorted alphabetically by title (A-Z) as a new list.
+     * The internal list keeps its order, so the search index (whose results
+     * follow list order) does not have to be rebuilt for a sorted view.
      */
-    public void sortBooksAlphabetically() {
-        books.sort((a, b) -> a.getTitle().compareToIgnoreCase(b.getTitle()));
-        System.out.println("[BookService] Books sorted alphabetically by title");
+    public List<Book> getBooksSortedByTitle() {
+        List<Book> sorted = new ArrayList<>(books);
+        sorted.sort((a, b) -> a.getTitle().compareToIgnoreCase(b.getTitle()));
+        return sorted;
     }
     
  // In BookService.java
@@ -68,49 +186,90 @@ public class BookService {
         if (booksList != null) {
             this.books.addAll(booksList);
         }
+        this.popularity = new IndexedMaxHeap<>(BY_POPULARITY, this.books.size());
+        rebuildIndexes();
     }
 
+    // Case-insensitive, like the ids have always been compared; first match in list order
     public Book searchBookById(String bookId) {
-        for (Book b : books) {
-            if (b.getId().equalsIgnoreCase(bookId)) return b;
-        }
-        return null;
+        if (bookId == null) return null;
+        return byId.get(bookId.toLowerCase());
+    }
+
+    /**
+     * Keyword search over title, author and category: returns the books that contain
+     * every word of query as a whole word (case-insensitive). Answered from the
+     * inverted index, so it costs about the size of the result, not of the catalog.
+     */
+    public List<Book> searchBooks(String query) {
+        if (query == null) return new ArrayList<>();
+        return searchIndex.searchKeywords(query);
+    }
+
+    /**
+     * Autocomplete: up to limit books whose title or author starts with prefix
+     * (case-insensitive), most borrowed first.
+     */
+    public List<Book> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty()) return new ArrayList<>();
+        return searchIndex.suggest(prefix.trim(), limit);
+    }
+
+    /**
+     * Starts a query combining several conditions (title, author, category, keywords,
+     * availability, borrow count); see BookQuery for how it is planned.
+     */
+    public BookQuery query() {
+        return new BookQuery(books, searchIndex);
+    }
+
+    /**
+     * Like searchBooks, but each word may be misspelt by up to maxDistance edits
+     * ("Orwel", "Hoseini"). Closest matches first, then most borrowed.
+     */
+    public List<Book> searchBooksFuzzy(String query, int maxDistance) {
+        if (query == null || maxDistance < 0) return new ArrayList<>();
+        return searchIndex.searchFuzzy(query, maxDistance);
+    }
+
+    // Fuzzy search with the default distance (-Dlibrary.fuzzyDistance, 2 if unset)
+    public List<Book> searchBooksFuzzy(String query) {
+        return searchBooksFuzzy(query, FUZZY_DISTANCE);
     }
 
     public List<Book> searchBooksByTitle(String title) {
-        List<Book> result = new ArrayList<>();
-        if (title == null) return result;
-        String key = title.toLowerCase();
-        for (Book b : books) {
-            if (b.getTitle() != null && b.getTitle().toLowerCase().contains(key)) {
-                result.add(b);
-            }
-        }
-        return result;
+        if (title == null) return new ArrayList<>();
+        // Trigram candidates, verified with contains: same results as scanning every title
+        return searchIndex.searchTitle(title);
     }
 
+    // Author and category are dictionary-encoded: the substring test runs once per
+    // distinct value, and the books posted under the matching codes are merged
     public List<Book> searchBooksByAuthor(String author) {
-        List<Book> result = new ArrayList<>();
-        if (author == null) return result;
-        String key = author.toLowerCase();
-        for (Book b : books) {
-            if (b.getAuthor() != null && b.getAuthor().toLowerCase().contains(key)) {
-                result.add(b);
-            }
-        }
-        return result;
+        if (author == null) return new ArrayList<>();
+        return searchIndex.searchAuthorCodes(matchingCodes(Dictionaries.AUTHORS, author));
     }
 
     public List<Book> searchBooksByCategory(String category) {
-        List<Book> result = new ArrayList<>();
-        if (category == null) return result;
-        String key = category.toLowerCase();
-        for (Book b : books) {
-            if (b.getCategory() != null && b.getCategory().toLowerCase().contains(key)) {
-                result.add(b);
-            }
+        if (category == null) return new ArrayList<>();
+        return searchIndex.searchCategoryCodes(matchingCodes(Dictionaries.CATEGORIES, category));
+    }
+
+    // Codes of the dictionary values that contain text, ignoring case
+    static BitSet matchingCodes(IdDictionary dictionary, String text) {
+        String key = text.toLowerCase();
+        return matchingCodes(dictionary, value -> value.toLowerCase().contains(key));
+    }
+
+    // Codes of the dictionary values that satisfy test
+    static BitSet matchingCodes(IdDictionary dictionary, Predicate<String> test) {
+        BitSet codes = new BitSet();
+        int size = dictionary.size();
+        for (int code = 0; code < size; code++) {
+            String value = dictionary.nameOf(code);
+            if (value != null && test.test(value)) codes.set(code);
         }
-        return result;
+        return codes;
     }
 
     public List<Book> sortBooksByTitle(boolean ascending) {
@@ -127,35 +286,21 @@ public class BookService {
         return copy;
     }
 
-    // --- Most borrowed logic using MaxHeap_Imp ---
+    // --- Most borrowed logic using the popularity heap ---
     // Returns up to n most-borrowed books (descending by borrowCount).
-    // Uses MaxHeap_Imp to pick the current max repeatedly (rebuild heap each iteration).
+    // The heap is kept current by borrowCountChanged, so this is O(n log n) whatever the catalog size.
     public List<Book> getMostBorrowedBooks(int n) {
-        List<Book> result = new ArrayList<>();
-        if (books.isEmpty() || n <= 0) return result;
-
-        // Build wrapper list (book + count) which implements Comparable
-        List<BookCount> counts = new ArrayList<>();
-        for (Book b : books) {
-            counts.add(new BookCount(b, b.getBorrowCount()));
-        }
-
-        MaxHeap_Imp<BookCount> heap = new MaxHeap_Imp<>();
-
-        int limit = Math.min(n, counts.size());
-        for (int i = 0; i < limit; i++) {
-            // rebuild heap from current counts (some entries may have been marked used)
-            heap.buildHeap(counts);
-            BookCount top = heap.getMax();
-            if (top == null) break;
-            // If top is already marked (used), stop
-            if (top.count == Integer.MIN_VALUE) break;
-            result.add(top.book);
-            // mark it used so it won't be picked again
-            top.count = Integer.MIN_VALUE;
+        synchronized (popularity) {
+            return popularity.topN(n);
         }
+    }
 
-        return result;
+    // Up to k books with the most members waiting, longest queue first (O(N log k))
+    public List<Book> getLongestWaitlists(int k) {
+        return books.stream()
+                .filter(Book::hasReservations)
+                .collect(TopK.collector(k, Comparator.comparingInt(Book::getReservationCount)
+                        .thenComparing(Book::getId, Collections.reverseOrder(String.CASE_INSENSITIVE_ORDER))));
     }
 
     // --- Reservations ---
@@ -164,15 +309,8 @@ public class BookService {
         Book b = searchBookById(bookId);
         if (b == null) return false;
 
-        Queue_Imp<String> ids = b.getReservationQueue();
-        Queue_Imp<String> names = b.getReservationQueueNames();
-
-        // check duplicate
-        int size = ids.size();
-        for (int i = 0; i < size; i++) {
-            String idAt = ids.get(i);
-            if (idAt != null && idAt.equals(memberId)) return false; // already reserved
-        }
+        // check duplicate (O(1) through the book's handle map)
+        if (b.hasReservation(memberId)) return false; // already reserved
 
         b.addToReservationQueue(memberId, memberName);
         return true;
@@ -184,47 +322,18 @@ public class BookService {
         Book b = searchBookById(bookId);
         if (b == null) return false;
 
-        Queue_Imp<String> ids = b.getReservationQueue();
-        Queue_Imp<String> names = b.getReservationQueueNames();
-
-        // temporary queues to rebuild excluding the target memberId
-        Queue_Imp<String> tempIds = new Queue_Imp<>();
-        Queue_Imp<String> tempNames = new Queue_Imp<>();
-
-        boolean removed = false;
-
-        while (!ids.isEmpty()) {
-            String id = ids.dequeue();
-            String name = names.dequeue();
-            if (id != null && id.equals(memberId)) {
-                removed = true;
-                // skip adding this pair to temp -> effectively removing it
-            } else {
-                tempIds.enqueue(id);
-                tempNames.enqueue(name);
-            }
-        }
-
-        // restore remaining reservations back to original queues
-        while (!tempIds.isEmpty()) {
-            ids.enqueue(tempIds.dequeue());
-            names.enqueue(tempNames.dequeue());
-        }
-
-        return removed;
+        // removes the id/name pair from both queues by handle, no rebuilding
+        return b.removeReservation(memberId);
     }
     
     public List<Object[]> getAllReservations() {
         List<Object[]> allReservations = new ArrayList<>();
 
         for (Book b : books) {
-            Queue_Imp<String> ids = b.getReservationQueue();
-            Queue_Imp<String> names = b.getReservationQueueNames();
-            int size = ids.size();
-
-            for (int i = 0; i < size; i++) {
-                String memberId = ids.get(i);
-                String memberName = names.get(i);
+            if (!b.hasReservations()) continue;
+            Iterator<String> names = b.getReservationQueueNames().iterator();
+            for (String memberId : b.getReservationQueue()) {
+                String memberName = names.next();
                 if (memberId != null && memberName != null) {
                     allReservations.add(new Object[]{b.getId(), memberId, memberName});
                 }
@@ -233,22 +342,4 @@ public class BookService {
 
         return allReservations;
     }
-
-    // --- helper wrapper used by heap ---
-    private static class BookCount implements Comparable<BookCount> {
-        final Book book;
-        int count;
-
-        BookCount(Book book, int count) {
-            this.book = book;
-            this.count = count;
-        }
-
-        // natural ordering: compare by count (smaller -> less). MaxHeap_Imp expects compareTo > 0
-        // when this is greater than other
-        @Override
-        public int compareTo(BookCount o) {
-            return Integer.compare(this.count, o.count);
-        }
-    }
 }
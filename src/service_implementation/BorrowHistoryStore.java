@@ -0,0 +1,746 @@
+package service_implementation;
+
+import model.BorrowRecord;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * BorrowHistoryStore - borrow history split into monthly segments.
+ *
+ * Each record lives in the segment of the month it was borrowed in:
+ *   borrow_history/records-2025-10.txt  (same line format as borrow_records.txt)
+ *   borrow_history/records-2025-10.idx  (sidecar index)
+ *
+ * The sidecar maps bookId -> line offsets and memberId -> line offsets and ends with a
+ * footer holding the min/max borrow date, the record count and how many loans are
+ * still open. The sidecars are small and kept in memory, so per-book, per-member and
+ * date-range queries only open the segments (and lines) that can match.
+ *
+ * A segment whose month is over and has no open loans is sealed: it no longer changes
+ * and compactSealedSegments() can rewrite it once, sorted by date.
+ *
+ * Old sealed segments can be archived: the .txt is replaced by records-2025-10.arc, a
+ * series of independently deflated blocks of about ARCHIVE_BLOCK_SIZE bytes. Offsets
+ * in the sidecar stay the offsets in the uncompressed text, and the block index (Z
+ * lines) maps them to blocks, so a per-book/member query inflates only the blocks
+ * holding its lines.
+ *
+ * Borrowing and returning never rewrite a file. A new loan is appended to its segment
+ * and its postings plus a new footer are appended to the sidecar (a key may appear on
+ * several lines; the last footer wins). A return patches the loan's line in place: the
+ * return field of an open loan is "not returned", and the return date is written over
+ * it padded with spaces to the same width, which the parser ignores.
+ *
+ * Segments and archives are rewritten (import, compaction, archiving) through a temp
+ * file that is fsync'd and then renamed over the old one, so a crash leaves the old or
+ * the new file, never half of one. The footer holds the segment length; a segment whose
+ * sidecar is missing, torn or does not match that length gets its sidecar rebuilt from
+ * the data at startup.
+ *
+ * Sidecar line formats:
+ *   B|bookId|offset;offset;...
+ *   M|memberId|offset;offset;...
+ *   Z|uncompressedStart|uncompressedLength|compressedOffset|compressedLength
+ *   F|minDate|maxDate|count|openCount|length
+ */
+public class BorrowHistoryStore {
+
+    private static final String SEGMENT_PREFIX = "records-";
+    private static final String NOT_RETURNED = "not returned"; // return field of an open loan
+    private static final int ARCHIVE_BLOCK_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final FileIOService parser;
+    private final TreeMap<YearMonth, Segment> segments = new TreeMap<>();
+
+    private static class Segment {
+        final YearMonth month;
+        final Map<String, List<Long>> byBook = new HashMap<>();
+        final Map<String, List<Long>> byMember = new HashMap<>();
+        LocalDate minDate;
+        LocalDate maxDate;
+        int count;
+        int openCount;
+        long length;
+        List<long[]> blocks; // archived segments only: {start, length, compressedOffset, compressedLength}
+
+        Segment(YearMonth month) {
+            this.month = month;
+        }
+
+        void add(BorrowRecord r, long offset) {
+            byBook.computeIfAbsent(r.getBookId(), k -> new ArrayList<>()).add(offset);
+            byMember.computeIfAbsent(r.getMemberId(), k -> new ArrayList<>()).add(offset);
+            if (minDate == null || r.getBorrowDate().isBefore(minDate)) minDate = r.getBorrowDate();
+            if (maxDate == null || r.getBorrowDate().isAfter(maxDate)) maxDate = r.getBorrowDate();
+            count++;
+            if (r.getReturnDate() == null) openCount++;
+        }
+
+        boolean overlaps(LocalDate from, LocalDate to) {
+            return count > 0 && !maxDate.isBefore(from) && !minDate.isAfter(to);
+        }
+
+        boolean isArchived() {
+            return blocks != null;
+        }
+    }
+
+    public BorrowHistoryStore(String directoryName, FileIOService parser) {
+        this.directory = new File(directoryName);
+        this.parser = parser;
+        if (!directory.exists() && !directory.mkdirs()) {
+            System.out.println("Error creating history directory: " + directoryName);
+        }
+        loadIndexes();
+    }
+
+    public synchronized boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    // ========== WRITING ==========
+
+    // Splits an existing flat history into segments (used once to migrate borrow_records.txt)
+    public synchronized void importAll(List<BorrowRecord> records) {
+        Map<YearMonth, List<BorrowRecord>> byMonth = new TreeMap<>();
+        for (BorrowRecord r : records) {
+            byMonth.computeIfAbsent(YearMonth.from(r.getBorrowDate()), k -> new ArrayList<>()).add(r);
+        }
+        for (Map.Entry<YearMonth, List<BorrowRecord>> e : byMonth.entrySet()) {
+            writeSegment(e.getKey(), e.getValue());
+        }
+        System.out.println("[BorrowHistoryStore] Imported " + records.size() + " records into " + byMonth.size() + " segments");
+    }
+
+    /**
+     * Adds a new loan to its month's segment. A loan already stored with the same book,
+     * member and borrow date (e.g. appended again by journal replay, returned or not)
+     * is not added twice.
+     */
+    public synchronized void append(BorrowRecord record) {
+        YearMonth month = YearMonth.from(record.getBorrowDate());
+        Segment segment = segments.get(month);
+        if (segment != null && find(segment, record) != null) return;
+        if (segment == null) {
+            segment = new Segment(month);
+            segments.put(month, segment);
+        }
+        if (segment.isArchived()) {
+            // Late entry for an archived month (e.g. journal replay): back to plain text
+            List<BorrowRecord> records = readSegment(month);
+            records.add(record);
+            writeSegment(month, records);
+            return;
+        }
+
+        byte[] line = (record.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = new FileOutputStream(segmentFile(month), true)) {
+            out.write(line);
+        } catch (IOException e) {
+            System.out.println("Error appending to history segment: " + e.getMessage());
+            return;
+        }
+        long offset = segment.length;
+        segment.add(record, offset);
+        segment.length += line.length;
+        appendIndex(segment, "B|" + record.getBookId() + "|" + offset, "M|" + record.getMemberId() + "|" + offset);
+    }
+
+    /**
+     * Records a return: the return date is written over the "not returned" field of
+     * the open loan's line, in place. An archived segment has no open loans, so it
+     * is never patched.
+     */
+    public synchronized void update(BorrowRecord returned) {
+        YearMonth month = YearMonth.from(returned.getBorrowDate());
+        Segment segment = segments.get(month);
+        if (segment == null || segment.isArchived()) return;
+
+        long[] line = find(segment, returned);
+        if (line == null || line[1] < 0) return; // unknown or already returned
+        byte[] patch = String.format("%-" + NOT_RETURNED.length() + "s", returned.getReturnDate())
+                .getBytes(StandardCharsets.UTF_8);
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(month), "rw")) {
+            file.seek(line[1]);
+            file.write(patch);
+        } catch (IOException e) {
+            System.out.println("Error updating history segment: " + e.getMessage());
+            return;
+        }
+        segment.openCount--;
+        appendIndex(segment);
+    }
+
+    /**
+     * Rewrites every sealed segment (finished month, no open loans) sorted by borrow
+     * date. Sealed segments never change again, so this only has to happen once each.
+     */
+    public synchronized int compactSealedSegments() {
+        int compacted = 0;
+        YearMonth current = YearMonth.now();
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (!isSealed(segment, current) || segment.isArchived()) continue;
+            List<BorrowRecord> records = readSegment(segment.month);
+            records.sort(Comparator.comparing(BorrowRecord::getBorrowDate));
+            writeSegment(segment.month, records);
+            compacted++;
+        }
+        return compacted;
+    }
+
+    /**
+     * Makes sure every given record is stored, adding the missing ones. Called before
+     * records are dropped from borrow_records.txt, so nothing exists only there.
+     */
+    public synchronized void addMissing(List<BorrowRecord> records) {
+        Map<YearMonth, List<BorrowRecord>> byMonth = new TreeMap<>();
+        for (BorrowRecord r : records) {
+            byMonth.computeIfAbsent(YearMonth.from(r.getBorrowDate()), k -> new ArrayList<>()).add(r);
+        }
+        for (Map.Entry<YearMonth, List<BorrowRecord>> e : byMonth.entrySet()) {
+            List<BorrowRecord> stored = readSegment(e.getKey());
+            Set<String> keys = new HashSet<>();
+            for (BorrowRecord r : stored) keys.add(r.getBookId() + "|" + r.getMemberId() + "|" + r.getBorrowDate());
+            boolean changed = false;
+            for (BorrowRecord r : e.getValue()) {
+                if (keys.add(r.getBookId() + "|" + r.getMemberId() + "|" + r.getBorrowDate())) {
+                    stored.add(r);
+                    changed = true;
+                }
+            }
+            if (changed) writeSegment(e.getKey(), stored);
+        }
+    }
+
+    /**
+     * Compresses every sealed segment whose month ended before the cutoff into an
+     * archive of deflated blocks (sorted by borrow date). Returns how many were archived.
+     */
+    public synchronized int archiveSealedSegments(LocalDate cutoff) {
+        int archived = 0;
+        long before = 0;
+        long after = 0;
+        YearMonth current = YearMonth.now();
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment.isArchived() || segment.count == 0 || !isSealed(segment, current)) continue;
+            if (!segment.month.atEndOfMonth().isBefore(cutoff)) continue;
+            before += segmentFile(segment.month).length();
+            List<BorrowRecord> records = readSegment(segment.month);
+            records.sort(Comparator.comparing(BorrowRecord::getBorrowDate));
+            if (writeArchive(segment.month, records)) {
+                after += archiveFile(segment.month).length();
+                archived++;
+            }
+        }
+        if (archived > 0) {
+            System.out.println("[BorrowHistoryStore] Archived " + archived + " segments: " + before + " -> " + after + " bytes");
+        }
+        return archived;
+    }
+
+    public synchronized int getArchivedSegmentCount() {
+        int archived = 0;
+        for (Segment segment : segments.values()) {
+            if (segment.isArchived()) archived++;
+        }
+        return archived;
+    }
+
+    public synchronized boolean isSealed(YearMonth month) {
+        Segment segment = segments.get(month);
+        return segment != null && isSealed(segment, YearMonth.now());
+    }
+
+    private static boolean isSealed(Segment segment, YearMonth current) {
+        return segment.month.isBefore(current) && segment.openCount == 0;
+    }
+
+    // ========== QUERIES ==========
+
+    public synchronized List<BorrowRecord> findByBook(String bookId) {
+        List<BorrowRecord> result = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            List<Long> offsets = segment.byBook.get(bookId);
+            if (offsets != null) result.addAll(readAt(segment.month, offsets));
+        }
+        return result;
+    }
+
+    public synchronized List<BorrowRecord> findByMember(String memberId) {
+        List<BorrowRecord> result = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            List<Long> offsets = segment.byMember.get(memberId);
+            if (offsets != null) result.addAll(readAt(segment.month, offsets));
+        }
+        return result;
+    }
+
+    // Records borrowed between from and to (inclusive); segments outside the range are skipped
+    public synchronized List<BorrowRecord> findBetween(LocalDate from, LocalDate to) {
+        List<BorrowRecord> result = new ArrayList<>();
+        for (Segment segment : segments.subMap(YearMonth.from(from), true, YearMonth.from(to), true).values()) {
+            if (!segment.overlaps(from, to)) continue;
+            for (BorrowRecord r : readSegment(segment.month)) {
+                if (!r.getBorrowDate().isBefore(from) && !r.getBorrowDate().isAfter(to)) result.add(r);
+            }
+        }
+        return result;
+    }
+
+    // Loans per member over the whole history, counted from the sidecar postings (no segment is read)
+    public synchronized Map<String, Integer> countLoansByMember() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Segment segment : segments.values()) {
+            for (Map.Entry<String, List<Long>> e : segment.byMember.entrySet()) {
+                counts.merge(e.getKey(), e.getValue().size(), Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    // ========== SEGMENT FILES ==========
+
+    private File segmentFile(YearMonth month) {
+        return new File(directory, SEGMENT_PREFIX + month + ".txt");
+    }
+
+    private File indexFile(YearMonth month) {
+        return new File(directory, SEGMENT_PREFIX + month + ".idx");
+    }
+
+    private File archiveFile(YearMonth month) {
+        return new File(directory, SEGMENT_PREFIX + month + ".arc");
+    }
+
+    private void writeSegment(YearMonth month, List<BorrowRecord> records) {
+        Segment segment = new Segment(month);
+        try {
+            replaceFile(segmentFile(month), out -> {
+                for (BorrowRecord r : records) {
+                    byte[] line = (r.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+                    out.write(line);
+                    segment.add(r, segment.length);
+                    segment.length += line.length;
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("Error writing history segment: " + e.getMessage());
+            return;
+        }
+        segments.put(month, segment);
+        writeIndex(segment);
+        archiveFile(month).delete(); // the month may have been archived before
+    }
+
+    private List<BorrowRecord> readSegment(YearMonth month) {
+        List<BorrowRecord> records = new ArrayList<>();
+        Segment segment = segments.get(month);
+        if (segment != null && segment.isArchived()) {
+            try (RandomAccessFile file = new RandomAccessFile(archiveFile(month), "r")) {
+                for (long[] block : segment.blocks) {
+                    byte[] data = inflateBlock(file, block);
+                    int start = 0;
+                    for (int i = 0; i < data.length; i++) {
+                        if (data[i] != '\n') continue;
+                        BorrowRecord r = parser.parseBorrowRecord(new String(data, start, i - start, StandardCharsets.UTF_8));
+                        if (r != null) records.add(r);
+                        start = i + 1;
+                    }
+                }
+            } catch (IOException | DataFormatException e) {
+                System.out.println("Error reading history archive: " + e.getMessage());
+            }
+            return records;
+        }
+        File file = segmentFile(month);
+        if (!file.exists()) return records;
+        try (BorrowRecordReader reader = new BorrowRecordReader(file.getPath(), parser)) {
+            while (reader.hasNext()) records.add(reader.next());
+        } catch (IOException e) {
+            System.out.println("Error reading history segment: " + e.getMessage());
+        }
+        return records;
+    }
+
+    // Reads just the lines at the given offsets
+    private List<BorrowRecord> readAt(YearMonth month, List<Long> offsets) {
+        Segment segment = segments.get(month);
+        if (segment != null && segment.isArchived()) {
+            return readArchivedAt(segment, offsets);
+        }
+        List<BorrowRecord> records = new ArrayList<>();
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(month), "r")) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            for (long offset : offsets) {
+                file.seek(offset);
+                line.reset();
+                int b;
+                while ((b = file.read()) != -1 && b != '\n') line.write(b);
+                BorrowRecord r = parser.parseBorrowRecord(line.toString(StandardCharsets.UTF_8));
+                if (r != null) records.add(r);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading history segment: " + e.getMessage());
+        }
+        return records;
+    }
+
+    // Same as readAt for an archived segment: each needed block is inflated once
+    private List<BorrowRecord> readArchivedAt(Segment segment, List<Long> offsets) {
+        List<BorrowRecord> records = new ArrayList<>();
+        try (RandomAccessFile file = new RandomAccessFile(archiveFile(segment.month), "r")) {
+            long[] current = null;
+            byte[] data = null;
+            for (long offset : offsets) {
+                long[] block = findBlock(segment.blocks, offset);
+                if (block == null) continue;
+                if (block != current) {
+                    data = inflateBlock(file, block);
+                    current = block;
+                }
+                int start = (int) (offset - block[0]);
+                int end = start;
+                while (end < data.length && data[end] != '\n') end++;
+                BorrowRecord r = parser.parseBorrowRecord(new String(data, start, end - start, StandardCharsets.UTF_8));
+                if (r != null) records.add(r);
+            }
+        } catch (IOException | DataFormatException e) {
+            System.out.println("Error reading history archive: " + e.getMessage());
+        }
+        return records;
+    }
+
+    // Binary search for the block whose uncompressed range holds offset
+    private static long[] findBlock(List<long[]> blocks, long offset) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long[] block = blocks.get(mid);
+            if (offset < block[0]) high = mid - 1;
+            else if (offset >= block[0] + block[1]) low = mid + 1;
+            else return block;
+        }
+        return null;
+    }
+
+    private static byte[] inflateBlock(RandomAccessFile file, long[] block) throws IOException, DataFormatException {
+        byte[] compressed = new byte[(int) block[3]];
+        file.seek(block[2]);
+        file.readFully(compressed);
+        byte[] data = new byte[(int) block[1]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int n = 0;
+            while (n < data.length && !inflater.finished()) {
+                int read = inflater.inflate(data, n, data.length - n);
+                if (read == 0 && inflater.needsInput()) break;
+                n += read;
+            }
+            if (n != data.length) throw new DataFormatException("truncated archive block");
+        } finally {
+            inflater.end();
+        }
+        return data;
+    }
+
+    /**
+     * Writes the records as deflated blocks, then the sidecar with the block index,
+     * then removes the .txt. A crash before the sidecar is written leaves the .txt
+     * segment in charge.
+     */
+    private boolean writeArchive(YearMonth month, List<BorrowRecord> records) {
+        Segment segment = new Segment(month);
+        segment.blocks = new ArrayList<>();
+        ByteArrayOutputStream block = new ByteArrayOutputStream(ARCHIVE_BLOCK_SIZE + 256);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            replaceFile(archiveFile(month), out -> {
+                long compressedOffset = 0;
+                for (BorrowRecord r : records) {
+                    byte[] line = (r.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+                    if (block.size() > 0 && block.size() + line.length > ARCHIVE_BLOCK_SIZE) {
+                        compressedOffset += writeBlock(out, deflater, block, segment, compressedOffset);
+                    }
+                    segment.add(r, segment.length);
+                    segment.length += line.length;
+                    block.write(line);
+                }
+                if (block.size() > 0) {
+                    writeBlock(out, deflater, block, segment, compressedOffset);
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("Error writing history archive: " + e.getMessage());
+            return false;
+        } finally {
+            deflater.end();
+        }
+        segments.put(month, segment);
+        writeIndex(segment);
+        segmentFile(month).delete();
+        return true;
+    }
+
+    /**
+     * Rebuilds the sidecar of an archive whose sidecar is missing or incomplete. The
+     * blocks are self-delimiting zlib streams, so they are inflated one after another
+     * and the archive is written again from the recovered lines.
+     */
+    private void recoverArchive(YearMonth month) {
+        List<BorrowRecord> records = new ArrayList<>();
+        Inflater inflater = new Inflater();
+        try {
+            byte[] data = Files.readAllBytes(archiveFile(month).toPath());
+            ByteArrayOutputStream text = new ByteArrayOutputStream(ARCHIVE_BLOCK_SIZE + 256);
+            byte[] buffer = new byte[8192];
+            int pos = 0;
+            while (pos < data.length) {
+                inflater.reset();
+                inflater.setInput(data, pos, data.length - pos);
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(buffer);
+                    if (n == 0 && inflater.needsInput()) throw new DataFormatException("truncated block at " + pos);
+                    text.write(buffer, 0, n);
+                }
+                pos += (int) inflater.getBytesRead();
+            }
+            for (String line : text.toString(StandardCharsets.UTF_8).split("\n")) {
+                BorrowRecord r = parser.parseBorrowRecord(line);
+                if (r != null) records.add(r);
+            }
+        } catch (IOException | DataFormatException e) {
+            System.out.println("Error recovering history archive: " + e.getMessage());
+            return;
+        } finally {
+            inflater.end();
+        }
+        writeArchive(month, records);
+    }
+
+    // Writes a new version of target to "target.tmp", fsyncs it and renames it over target
+    private static void replaceFile(File target, StreamWriter body) throws IOException {
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp, false)) {
+            OutputStream out = new BufferedOutputStream(file);
+            body.write(out);
+            out.flush();
+            file.getChannel().force(true);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private interface StreamWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    // Deflates the buffered lines as one block and records it; returns the compressed size
+    private static long writeBlock(OutputStream out, Deflater deflater, ByteArrayOutputStream block,
+                                   Segment segment, long compressedOffset) throws IOException {
+        byte[] data = block.toByteArray();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = new byte[8192];
+        long compressed = 0;
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+            compressed += n;
+        }
+        segment.blocks.add(new long[]{segment.length - data.length, data.length, compressedOffset, compressed});
+        block.reset();
+        return compressed;
+    }
+
+    /**
+     * Looks up the stored line of the same loan (book, member, borrow date), returned or
+     * not. Returns {line offset, offset of its "not returned" field or -1 if returned},
+     * or null if the loan is not stored.
+     */
+    private long[] find(Segment segment, BorrowRecord record) {
+        List<Long> offsets = segment.byBook.get(record.getBookId());
+        if (offsets == null) return null;
+        if (segment.isArchived()) {
+            for (BorrowRecord r : readArchivedAt(segment, offsets)) {
+                if (r.getMemberId().equals(record.getMemberId()) && r.getBorrowDate().equals(record.getBorrowDate())) {
+                    return new long[]{-1, -1};
+                }
+            }
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(segment.month), "r")) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            for (long offset : offsets) {
+                file.seek(offset);
+                line.reset();
+                int b;
+                while ((b = file.read()) != -1 && b != '\n') line.write(b);
+                String text = line.toString(StandardCharsets.UTF_8);
+                BorrowRecord r = parser.parseBorrowRecord(text);
+                if (r == null || !r.getMemberId().equals(record.getMemberId())
+                        || !r.getBorrowDate().equals(record.getBorrowDate())) continue;
+                if (r.getReturnDate() != null || !text.endsWith(NOT_RETURNED)) return new long[]{offset, -1};
+                return new long[]{offset, offset + line.size() - NOT_RETURNED.length()};
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading history segment: " + e.getMessage());
+        }
+        return null;
+    }
+
+    // ========== SIDECAR INDEXES ==========
+
+    private void writeIndex(Segment segment) {
+        try (BufferedWriter writer = Files.newBufferedWriter(indexFile(segment.month).toPath(), StandardCharsets.UTF_8)) {
+            writePostings(writer, "B", segment.byBook);
+            writePostings(writer, "M", segment.byMember);
+            if (segment.isArchived()) {
+                for (long[] block : segment.blocks) {
+                    writer.write("Z|" + block[0] + "|" + block[1] + "|" + block[2] + "|" + block[3]);
+                    writer.newLine();
+                }
+            }
+            writer.write(footer(segment));
+            writer.newLine();
+        } catch (IOException e) {
+            System.out.println("Error writing history index: " + e.getMessage());
+        }
+    }
+
+    // Adds lines and a fresh footer to the end of the sidecar instead of rewriting it
+    private void appendIndex(Segment segment, String... lines) {
+        try (BufferedWriter writer = Files.newBufferedWriter(indexFile(segment.month).toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+            writer.write(footer(segment));
+            writer.newLine();
+        } catch (IOException e) {
+            System.out.println("Error appending history index: " + e.getMessage());
+        }
+    }
+
+    private static String footer(Segment segment) {
+        return "F|" + segment.minDate + "|" + segment.maxDate + "|" + segment.count + "|" + segment.openCount
+                + "|" + segment.length;
+    }
+
+    private static void writePostings(BufferedWriter writer, String type, Map<String, List<Long>> postings)
+            throws IOException {
+        for (Map.Entry<String, List<Long>> e : postings.entrySet()) {
+            StringBuilder sb = new StringBuilder(type).append('|').append(e.getKey()).append('|');
+            List<Long> offsets = e.getValue();
+            for (int i = 0; i < offsets.size(); i++) {
+                if (i > 0) sb.append(';');
+                sb.append(offsets.get(i));
+            }
+            writer.write(sb.toString());
+            writer.newLine();
+        }
+    }
+
+    private void loadIndexes() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(".idx"));
+        if (files == null) return;
+        for (File file : files) {
+            String name = file.getName();
+            YearMonth month = YearMonth.parse(name.substring(SEGMENT_PREFIX.length(), name.length() - 4));
+            Segment segment = new Segment(month);
+            boolean hasFooter = false;
+            long length = -1; // segment length the last footer was written for (-1: older sidecar)
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split("\\|");
+                    if (parts[0].equals("F") && (parts.length == 5 || parts.length == 6)) {
+                        segment.minDate = parts[1].equals("null") ? null : LocalDate.parse(parts[1]);
+                        segment.maxDate = parts[2].equals("null") ? null : LocalDate.parse(parts[2]);
+                        segment.count = Integer.parseInt(parts[3]);
+                        segment.openCount = Integer.parseInt(parts[4]);
+                        length = parts.length == 6 ? Long.parseLong(parts[5]) : -1;
+                        hasFooter = true;
+                    } else if (parts[0].equals("Z") && parts.length == 5) {
+                        if (segment.blocks == null) segment.blocks = new ArrayList<>();
+                        segment.blocks.add(new long[]{Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                                Long.parseLong(parts[3]), Long.parseLong(parts[4])});
+                    } else if (parts.length == 3) {
+                        List<Long> offsets = new ArrayList<>();
+                        for (String o : parts[2].split(";")) offsets.add(Long.parseLong(o));
+                        (parts[0].equals("B") ? segment.byBook : segment.byMember)
+                                .computeIfAbsent(parts[1], k -> new ArrayList<>()).addAll(offsets);
+                    }
+                }
+            } catch (Exception e) {
+                System.out.println("Error reading history index " + name + ": " + e.getMessage());
+                hasFooter = false; // torn line: rebuild below
+            }
+            if (hasFooter && segment.isArchived()) {
+                long[] last = segment.blocks.get(segment.blocks.size() - 1);
+                segment.length = last[0] + last[1];
+                segments.put(month, segment);
+                segmentFile(month).delete(); // left over if archiving was interrupted
+            } else if (hasFooter && (length < 0 || length == segmentFile(month).length())) {
+                segment.length = segmentFile(month).length();
+                segments.put(month, segment);
+            } else {
+                // Sidecar is incomplete or behind its segment (e.g. crash between the
+                // two appends): rebuild from the data
+                rebuildIndex(month);
+            }
+        }
+
+        // Segments and archives with no sidecar at all (e.g. crash before it was written)
+        File[] data = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX)
+                && (name.endsWith(".txt") || name.endsWith(".arc")));
+        if (data != null) {
+            for (File file : data) {
+                String name = file.getName();
+                YearMonth month = YearMonth.parse(name.substring(SEGMENT_PREFIX.length(), name.length() - 4));
+                if (!segments.containsKey(month)) rebuildIndex(month);
+            }
+        }
+
+        // Temp files left by an interrupted rewrite; the file they were replacing is intact
+        File[] temps = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(".tmp"));
+        if (temps != null) {
+            for (File temp : temps) temp.delete();
+        }
+    }
+
+    // The plain segment wins when both exist: an archive only replaces it once its sidecar is written
+    private void rebuildIndex(YearMonth month) {
+        System.out.println("[BorrowHistoryStore] Rebuilding index for " + month);
+        if (segmentFile(month).exists()) {
+            writeSegment(month, readSegment(month));
+        } else if (archiveFile(month).exists()) {
+            recoverArchive(month);
+        }
+    }
+}
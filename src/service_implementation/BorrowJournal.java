@@ -0,0 +1,270 @@
+package service_implementation;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * BorrowJournal - append-only write-ahead log for borrow/return operations.
+ *
+ * Instead of rewriting books.txt, members.txt and borrow_records.txt after every
+ * checkout, BorrowService appends one small entry here and fsyncs it. The .txt files
+ * are only refreshed at checkpoints, after which the covered entries are dropped.
+ *
+ * Entry format (one per line):
+ *   crc32hex|BORROW|bookId|memberId|memberName|borrowDate|borrowCount
+ *   crc32hex|RETURN|bookId|memberId|returnDate|borrowCount
+ *   crc32hex|CHECKPOINT|position
+ * Fields are escaped ('%' -> %25, '|' -> %7C, CR/LF -> %0D/%0A), so an id or name
+ * containing the separator cannot shift the fields of its entry.
+ *
+ * The journal itself records which entries a checkpoint covered: BorrowService takes
+ * position() before it serializes its state, and checkpoint(position) appends (and
+ * fsyncs) a CHECKPOINT marker with that byte offset before the covered entries are
+ * cut off. Replay skips everything before the last marker's position, so a crash
+ * between the two steps does not apply covered entries again. Files written outside
+ * checkpoints (books.txt after a reservation, say) do not move this position.
+ */
+public class BorrowJournal {
+
+    public static final String BORROW = "BORROW";
+    public static final String RETURN = "RETURN";
+    private static final String CHECKPOINT = "CHECKPOINT";
+
+    private static final String SEPARATOR = "|";
+
+    private final String filename;
+    private FileChannel channel;
+    private int entryCount;
+    private long length; // bytes of valid entries, i.e. the position of the next one
+
+    // Callback used by replay() so BorrowService decides how to apply each entry
+    public interface EntryHandler {
+        void onBorrow(String bookId, String memberId, String memberName, LocalDate borrowDate, int borrowCount);
+        void onReturn(String bookId, String memberId, LocalDate returnDate, int borrowCount);
+    }
+
+    public BorrowJournal(String filename) {
+        this.filename = filename;
+        this.entryCount = 0;
+    }
+
+    // ========== WRITING ==========
+    public void appendBorrow(String bookId, String memberId, String memberName, LocalDate borrowDate, int borrowCount) {
+        append(BORROW + SEPARATOR + escape(bookId) + SEPARATOR + escape(memberId) + SEPARATOR + escape(memberName)
+                + SEPARATOR + borrowDate + SEPARATOR + borrowCount);
+    }
+
+    public void appendReturn(String bookId, String memberId, LocalDate returnDate, int borrowCount) {
+        append(RETURN + SEPARATOR + escape(bookId) + SEPARATOR + escape(memberId) + SEPARATOR + returnDate
+                + SEPARATOR + borrowCount);
+    }
+
+    private static String escape(String field) {
+        String s = String.valueOf(field);
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String code = c == '%' ? "%25" : c == '|' ? "%7C" : c == '\n' ? "%0A" : c == '\r' ? "%0D" : null;
+            if (code == null) {
+                if (sb != null) sb.append(c);
+                continue;
+            }
+            if (sb == null) sb = new StringBuilder(s.length() + 8).append(s, 0, i);
+            sb.append(code);
+        }
+        return sb == null ? s : sb.toString();
+    }
+
+    private static String unescape(String field) {
+        if (field.indexOf('%') < 0) return field;
+        StringBuilder sb = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '%' && i + 2 < field.length()) {
+                sb.append((char) Integer.parseInt(field.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private synchronized void append(String payload) {
+        String line = checksum(payload) + SEPARATOR + payload + "\n";
+        try {
+            FileChannel ch = openChannel();
+            ByteBuffer buf = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(false); // entry is durable once this returns
+            length += line.getBytes(StandardCharsets.UTF_8).length;
+            entryCount++;
+        } catch (IOException e) {
+            System.out.println("Error appending journal entry: " + e.getMessage());
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(new File(filename).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    // Number of entries written since the last checkpoint (including replayed ones)
+    public synchronized int size() {
+        return entryCount;
+    }
+
+    // Offset of the next entry: a checkpoint taken now covers every entry before it
+    public synchronized long position() {
+        return length;
+    }
+
+    /**
+     * Called once a checkpoint has written the files: marks every entry before
+     * position as covered (fsync'd marker first), then rewrites the journal with
+     * only the entries appended since position (temp file + rename).
+     */
+    public synchronized void checkpoint(long position) {
+        append(CHECKPOINT + SEPARATOR + position);
+        try {
+            byte[] data = Files.readAllBytes(Paths.get(filename));
+            ByteArrayOutputStream tail = new ByteArrayOutputStream();
+            int kept = 0;
+            int start = (int) Math.min(position, data.length);
+            for (int i = start; i < data.length; i++) {
+                if (data[i] != '\n') continue;
+                String line = new String(data, start, i - start, StandardCharsets.UTF_8);
+                if (!line.contains(SEPARATOR + CHECKPOINT + SEPARATOR)) {
+                    tail.write(data, start, i + 1 - start);
+                    kept++;
+                }
+                start = i + 1;
+            }
+            Path target = Paths.get(filename);
+            Path temp = Paths.get(filename + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buf = ByteBuffer.wrap(tail.toByteArray());
+                while (buf.hasRemaining()) out.write(buf);
+                out.force(true);
+            }
+            close();
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            length = tail.size();
+            entryCount = kept;
+        } catch (IOException e) {
+            System.out.println("Error compacting journal: " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("Error closing journal: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    // ========== REPLAY ==========
+    /**
+     * Replays every valid entry after the last checkpoint marker's position, in order.
+     * Stops at the first entry whose checksum does not match (a torn write from a
+     * crash) and cuts the file back to the last good entry so new appends are not
+     * hidden behind garbage.
+     *
+     * @return number of entries replayed
+     */
+    public synchronized int replay(EntryHandler handler) {
+        File file = new File(filename);
+        if (!file.exists()) return 0;
+
+        List<String> payloads = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        long covered = 0;
+        long validBytes = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int sep = line.indexOf(SEPARATOR);
+                if (sep <= 0) break;
+                String payload = line.substring(sep + 1);
+                if (!line.substring(0, sep).equals(checksum(payload))) break;
+                if (payload.startsWith(CHECKPOINT + SEPARATOR)) {
+                    covered = Long.parseLong(payload.substring(CHECKPOINT.length() + 1));
+                } else {
+                    payloads.add(payload);
+                    offsets.add(validBytes);
+                }
+                validBytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Error reading journal: " + e.getMessage());
+            return 0;
+        }
+        length = validBytes;
+
+        if (validBytes < file.length()) {
+            System.out.println("[BorrowJournal] Discarding torn tail after " + payloads.size() + " entries");
+            try {
+                openChannel().truncate(validBytes);
+            } catch (IOException e) {
+                System.out.println("Error repairing journal: " + e.getMessage());
+            }
+        }
+
+        int applied = 0;
+        entryCount = 0;
+        for (int n = 0; n < payloads.size(); n++) {
+            if (offsets.get(n) < covered) continue; // in the files since that checkpoint
+            entryCount++;
+            String payload = payloads.get(n);
+            String[] parts = payload.split("\\|", -1);
+            try {
+                if (parts[0].equals(BORROW) && parts.length == 6) {
+                    handler.onBorrow(unescape(parts[1]), unescape(parts[2]), unescape(parts[3]),
+                            LocalDate.parse(parts[4]), Integer.parseInt(parts[5]));
+                    applied++;
+                } else if (parts[0].equals(RETURN) && parts.length == 5) {
+                    handler.onReturn(unescape(parts[1]), unescape(parts[2]), LocalDate.parse(parts[3]), Integer.parseInt(parts[4]));
+                    applied++;
+                } else {
+                    System.out.println("[BorrowJournal] Skipping malformed entry: " + payload);
+                }
+            } catch (Exception e) {
+                System.out.println("Error parsing journal entry: " + e.getMessage());
+            }
+        }
+        return applied;
+    }
+
+    private static String checksum(String payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.getBytes(StandardCharsets.UTF_8));
+        return String.format("%08x", crc.getValue());
+    }
+}
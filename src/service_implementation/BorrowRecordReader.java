@@ -0,0 +1,68 @@
+package service_implementation;
+
+import model.BorrowRecord;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * BorrowRecordReader - reads borrow_records.txt one line at a time.
+ *
+ * Only the current line is held in memory, so scanning a history of millions of rows
+ * uses constant memory, and callers that are looking for a single record can stop
+ * (and close the reader) as soon as they find it. Malformed lines are skipped.
+ *
+ * Always close the reader (try-with-resources) when stopping early.
+ */
+public class BorrowRecordReader implements Iterator<BorrowRecord>, Closeable {
+
+    private final BufferedReader reader;
+    private final FileIOService parser;
+    private BorrowRecord next;
+    private boolean closed;
+
+    public BorrowRecordReader(String filename, FileIOService parser) throws IOException {
+        this.reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8);
+        this.parser = parser;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) return true;
+        if (closed) return false;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                next = parser.parseBorrowRecord(line);
+                if (next != null) return true;
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading borrow records: " + e.getMessage());
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    public BorrowRecord next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        BorrowRecord record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            reader.close();
+        } catch (IOException e) {
+            System.out.println("Error closing borrow records: " + e.getMessage());
+        }
+    }
+}
@@ -5,7 +5,8 @@ import model.Book;
 import model.BorrowRecord;
 import model.Member;
 import utils.SinglyLinkedList_Imp;
-import utils.HashMap_Imp;
+import utils.ConcurrentHashMap_Imp;
+import utils.TopK;
 import java.time.LocalDate;
 import java.util.*;
 
@@ -14,20 +15,43 @@ public class BorrowService implements BorrowServiceInterface {
     private SinglyLinkedList_Imp<BorrowRecord> borrowRecords;
     private SinglyLinkedList_Imp<Book> books;
     private SinglyLinkedList_Imp<Member> members;
-    private HashMap_Imp<String, Book> bookMap;
-    private HashMap_Imp<String, Member> memberMap;
+    // Shared by every terminal and the background flusher; reads never lock
+    private ConcurrentHashMap_Imp<String, Book> bookMap;
+    private ConcurrentHashMap_Imp<String, Member> memberMap;
     private FileIOService fileIO;
 
     private final String booksFile = "books.txt";
     private final String membersFile = "members.txt";
     private final String recordsFile = "borrow_records.txt";
+    private final String journalFile = "borrow_journal.log";
+    private final String snapshotFile = "library.snapshot";
+
+    // Borrow/return are journaled; the .txt files are only rewritten every N entries
+    private static final int CHECKPOINT_INTERVAL = 50;
+
+    // A loan is overdue once it has been out longer than this
+    private static final int LOAN_PERIOD_DAYS = Integer.getInteger("library.loanPeriodDays", 14);
+
+    private final BorrowJournal journal;
+
+    // Open loans by dense book/member key; every record in borrowRecords is bound to it
+    private final OpenLoanIndex openLoans = new OpenLoanIndex();
+
+    // Monthly segments of the full history, used for per-book/member and date queries
+    private final String historyDir = "borrow_history";
+    private final BorrowHistoryStore historyStore;
 
     public BorrowService(List<Member> membersList, List<Book> booksList) {
+        this(membersList, booksList, null);
+    }
+
+    // recordsList: history already parsed by the caller (e.g. StartupLoader), or null to load it here
+    public BorrowService(List<Member> membersList, List<Book> booksList, List<BorrowRecord> recordsList) {
         this.fileIO = new FileIOService();
 
         // Initialize books
         this.books = new SinglyLinkedList_Imp<>();
-        this.bookMap = new HashMap_Imp<>();
+        this.bookMap = new ConcurrentHashMap_Imp<>(booksList.size());
         for (Book book : booksList) {
             books.addLast(book);
             bookMap.put(book.getId(), book);
@@ -35,7 +59,7 @@ public class BorrowService implements BorrowServiceInterface {
 
         // Initialize members
         this.members = new SinglyLinkedList_Imp<>();
-        this.memberMap = new HashMap_Imp<>();
+        this.memberMap = new ConcurrentHashMap_Imp<>(membersList.size());
         for (Member member : membersList) {
             members.addLast(member);
             memberMap.put(member.getId(), member);
@@ -43,9 +67,23 @@ public class BorrowService implements BorrowServiceInterface {
 
         // Load borrow records
         this.borrowRecords = new SinglyLinkedList_Imp<>();
-        List<BorrowRecord> loadedRecords = fileIO.loadBorrowRecords(recordsFile);
+        List<BorrowRecord> loadedRecords = recordsList != null ? recordsList : fileIO.loadBorrowRecords(recordsFile);
         for (BorrowRecord record : loadedRecords) {
             borrowRecords.addLast(record);
+            openLoans.open(record);
+        }
+
+        // First run with segments: split the existing flat history into months
+        this.historyStore = new BorrowHistoryStore(historyDir, fileIO);
+        if (historyStore.isEmpty() && !loadedRecords.isEmpty()) {
+            historyStore.importAll(loadedRecords);
+        }
+
+        // Replay operations that happened after the last checkpoint
+        this.journal = new BorrowJournal(journalFile);
+        int replayed = journal.replay(new JournalReplayer());
+        if (replayed > 0) {
+            System.out.println("[BorrowService] Replayed " + replayed + " journal entries");
         }
     }
 
@@ -58,40 +96,48 @@ public class BorrowService implements BorrowServiceInterface {
             List<Member> allMembers = fileIO.loadMembers(membersFile);
             for (Member m : allMembers) {
                 if (m.getId().equals(memberId)) {
-                    member = m;
-                    members.addLast(member);
-                    memberMap.put(member.getId(), member);
+                    // Another terminal may have loaded the same member meanwhile
+                    member = memberMap.putIfAbsent(m.getId(), m);
+                    if (member == null) {
+                        member = m;
+                        members.addLast(member);
+                    }
                     break;
                 }
             }
         }
 
-        if (book == null || member == null || !book.isAvailable()) return false;
+        if (book == null || member == null) return false;
+
+        // Claim the book atomically, so two terminals cannot both lend the same copy
+        boolean[] claimed = new boolean[1];
+        String memberName = member.getName();
+        bookMap.compute(bookId, (id, b) -> {
+            if (b != null && b.isAvailable()) {
+                b.setAvailable(false);
+                b.setCurrentBorrower(memberId, memberName);
+                b.incrementBorrowCount();
+                claimed[0] = true;
+            }
+            return b;
+        });
+        if (!claimed[0]) return false;
 
         member.borrowBook(bookId);
-        book.setAvailable(false);
-        book.setCurrentBorrower(memberId, member.getName());
-        book.incrementBorrowCount();
 
-        borrowRecords.addLast(new BorrowRecord(bookId, memberId, member.getName(), borrowDate));
+        BorrowRecord record = new BorrowRecord(bookId, memberId, member.getName(), borrowDate);
+        borrowRecords.addLast(record);
+        openLoans.open(record);
+        historyStore.append(record);
 
-        saveBooks();
-        saveMembers();
-        saveBorrowRecords();
+        journal.appendBorrow(bookId, memberId, member.getName(), borrowDate, book.getBorrowCount());
+        checkpointIfNeeded();
 
         return true;
     }
 
     @Override
     public boolean returnBook(String memberId, String bookId, LocalDate returnDate) {
-        // ✅ CRITICAL FIX: Reload borrow records from file to get latest data
-        this.borrowRecords = new SinglyLinkedList_Imp<>();
-        List<BorrowRecord> loadedRecords = fileIO.loadBorrowRecords(recordsFile);
-        for (BorrowRecord record : loadedRecords) {
-            borrowRecords.addLast(record);
-        }
-        System.out.println("[BorrowService] Reloaded " + borrowRecords.size() + " borrow records from file");
-        
         Book book = bookMap.get(bookId);
         Member member = memberMap.get(memberId);
 
@@ -100,9 +146,12 @@ public class BorrowService implements BorrowServiceInterface {
             List<Member> allMembers = fileIO.loadMembers(membersFile);
             for (Member m : allMembers) {
                 if (m.getId().equals(memberId)) {
-                    member = m;
-                    members.addLast(member);
-                    memberMap.put(member.getId(), member);
+                    // Another terminal may have loaded the same member meanwhile
+                    member = memberMap.putIfAbsent(m.getId(), m);
+                    if (member == null) {
+                        member = m;
+                        members.addLast(member);
+                    }
                     break;
                 }
             }
@@ -110,15 +159,17 @@ public class BorrowService implements BorrowServiceInterface {
 
         if (book == null || member == null) return false;
 
-        BorrowRecord record = null;
-        int recordIndex = -1;
-        for (int i = 0; i < borrowRecords.size(); i++) {
-            BorrowRecord r = borrowRecords.get(i);
-            if (r.getBookId().equals(bookId) && r.getMemberId().equals(memberId) && r.getReturnDate() == null) {
-                record = r;
-                recordIndex = i;
-                System.out.println("[BorrowService] Found active borrow record at index " + i);
-                break;
+        BorrowRecord record = findOpenRecord(bookId, memberId);
+
+        // ✅ CRITICAL FIX: Other screens may have written the record straight to the file.
+        // Stream the file and stop at the first match instead of reloading the whole history.
+        if (record == null) {
+            record = fileIO.findOpenBorrowRecord(recordsFile, bookId, memberId);
+            if (record != null) {
+                borrowRecords.addLast(record);
+                openLoans.open(record);
+                historyStore.append(record);
+                System.out.println("[BorrowService] Picked up active borrow record from file");
             }
         }
 
@@ -129,6 +180,8 @@ public class BorrowService implements BorrowServiceInterface {
 
         // ✅ Update the record with return date
         record.setReturnDate(returnDate);
+        openLoans.close(record);
+        historyStore.update(record);
         System.out.println("[BorrowService] Set return date to: " + returnDate);
         
         // ✅ Update member - remove the borrowed book
@@ -144,11 +197,10 @@ public class BorrowService implements BorrowServiceInterface {
         // ✅ Update the member in the map
         memberMap.put(member.getId(), member);
 
-        // ✅ Save all changes
-        System.out.println("[BorrowService] Saving after return - Book available: " + book.isAvailable());
-        saveBooks();
-        saveMembers();
-        saveBorrowRecords();
+        // ✅ Journal the change; the files catch up at the next checkpoint
+        System.out.println("[BorrowService] Journaling return - Book available: " + book.isAvailable());
+        journal.appendReturn(bookId, memberId, returnDate, book.getBorrowCount());
+        checkpointIfNeeded();
         
         System.out.println("[BorrowService] Return operation completed successfully");
 
@@ -157,96 +209,247 @@ public class BorrowService implements BorrowServiceInterface {
 
     @Override
     public List<BorrowRecord> getAllBorrowRecords() {
-        List<BorrowRecord> result = new ArrayList<>();
-        for (int i = 0; i < borrowRecords.size(); i++) result.add(borrowRecords.get(i));
+        List<BorrowRecord> result = new ArrayList<>(borrowRecords.size());
+        for (BorrowRecord r : borrowRecords) result.add(r);
         return result;
     }
 
+    // History queries go through the segment indexes instead of scanning every record
     @Override
     public List<BorrowRecord> getBorrowRecordsByMember(String memberId) {
-        List<BorrowRecord> result = new ArrayList<>();
-        for (int i = 0; i < borrowRecords.size(); i++) {
-            BorrowRecord r = borrowRecords.get(i);
-            if (r.getMemberId().equals(memberId)) result.add(r);
-        }
-        return result;
+        return historyStore.findByMember(memberId);
     }
 
     @Override
     public List<BorrowRecord> getBorrowRecordsByBook(String bookId) {
-        List<BorrowRecord> result = new ArrayList<>();
-        for (int i = 0; i < borrowRecords.size(); i++) {
-            BorrowRecord r = borrowRecords.get(i);
-            if (r.getBookId().equals(bookId)) result.add(r);
+        return historyStore.findByBook(bookId);
+    }
+
+    @Override
+    public List<BorrowRecord> getBorrowRecordsBetween(LocalDate from, LocalDate to) {
+        return historyStore.findBetween(from, to);
+    }
+
+    // Rewrites finished months (no open loans) once, sorted by date
+    public int compactHistory() {
+        return historyStore.compactSealedSegments();
+    }
+
+    /**
+     * Moves loans returned more than maxAgeDays ago out of borrow_records.txt, which then
+     * only holds open and recent loans. They stay in the history store, whose old
+     * finished months are compressed into archive blocks. Returns how many records moved.
+     */
+    public int archiveClosedRecords(int maxAgeDays) {
+        LocalDate cutoff = LocalDate.now().minusDays(maxAgeDays);
+        SinglyLinkedList_Imp<BorrowRecord> hot = new SinglyLinkedList_Imp<>();
+        List<BorrowRecord> cold = new ArrayList<>();
+        for (BorrowRecord r : borrowRecords) {
+            if (r.getReturnDate() != null && r.getReturnDate().isBefore(cutoff)) cold.add(r);
+            else hot.addLast(r);
         }
-        return result;
+
+        historyStore.addMissing(cold); // never drop a record that only the hot file has
+        historyStore.archiveSealedSegments(cutoff);
+        if (cold.isEmpty()) return 0;
+
+        borrowRecords = hot;
+        saveBorrowRecords();
+        fileIO.flushPendingSaves();
+        System.out.println("[BorrowService] Archived " + cold.size() + " returned records older than " + cutoff);
+        return cold.size();
     }
 
     @Override
     public boolean isBookBorrowedByMember(String bookId, String memberId) {
-        for (int i = 0; i < borrowRecords.size(); i++) {
-            BorrowRecord r = borrowRecords.get(i);
-            if (r.getBookId().equals(bookId) && r.getMemberId().equals(memberId) && r.getReturnDate() == null) return true;
-        }
-        return false;
+        return findOpenRecord(bookId, memberId) != null;
     }
 
     @Override
     public List<String> getCurrentlyBorrowedBookIdsByMember(String memberId) {
-        List<String> result = new ArrayList<>();
-        for (int i = 0; i < borrowRecords.size(); i++) {
-            BorrowRecord r = borrowRecords.get(i);
-            if (r.getMemberId().equals(memberId) && r.getReturnDate() == null) result.add(r.getBookId());
-        }
-        return result;
+        return openLoans.bookIdsOf(memberId);
     }
 
     @Override
     public List<BorrowRecord> getCurrentlyBorrowedRecords() {
-        List<BorrowRecord> result = new ArrayList<>();
-        for (int i = 0; i < borrowRecords.size(); i++) {
-            BorrowRecord r = borrowRecords.get(i);
-            if (r.getReturnDate() == null) result.add(r);
+        return openLoans.openLoans();
+    }
+
+    // ===============================
+    // 🔽 Top-K reports
+    // ===============================
+
+    /**
+     * Up to k members with the most loans over the whole history, most active first
+     * (ties: lower member id first). Counted from the history store's sidecar indexes,
+     * since borrow_records.txt only keeps open and recent loans once old ones are
+     * archived. Each row is {memberId, memberName, loanCount}, like getAllReservations().
+     */
+    public List<Object[]> getMostActiveMembers(int k) {
+        Map<String, Integer> loans = historyStore.countLoansByMember();
+        TopK<String> top = new TopK<>(k, Comparator.<String>comparingInt(loans::get)
+                .thenComparing(Comparator.reverseOrder()));
+        for (String memberId : loans.keySet()) top.offer(memberId);
+
+        List<Object[]> result = new ArrayList<>(top.size());
+        for (String memberId : top.toList()) {
+            Member m = memberMap.get(memberId);
+            result.add(new Object[]{memberId, m != null ? m.getName() : "", loans.get(memberId)});
         }
         return result;
     }
 
+    /**
+     * Up to k open loans past the loan period (library.loanPeriodDays, default 14),
+     * most overdue (oldest borrow date) first.
+     */
+    public List<BorrowRecord> getMostOverdueLoans(int k) {
+        LocalDate dueCutoff = LocalDate.now().minusDays(LOAN_PERIOD_DAYS);
+        return openLoans.openLoans().stream()
+                .filter(r -> r.getReturnDate() == null && r.getBorrowDate().isBefore(dueCutoff))
+                .collect(TopK.collector(k, Comparator.comparing(BorrowRecord::getBorrowDate, Comparator.reverseOrder())));
+    }
+
     @Override
     public void listAllBorrowRecords() {
-        for (int i = 0; i < borrowRecords.size(); i++) System.out.println(borrowRecords.get(i));
+        for (BorrowRecord r : borrowRecords) System.out.println(r);
+    }
+
+    // ===============================
+    // 🔽 Journal / Checkpoint
+    // ===============================
+
+    /**
+     * Writes the full state to the .txt files and the binary snapshot, then tells the
+     * journal which entries they cover. The position is taken first: an operation
+     * changes the in-memory state before it journals, so every entry before it is in
+     * what gets saved. Entries appended meanwhile stay in the journal. The snapshot
+     * comes after the text files, so its timestamp tells StartupLoader it is at least
+     * as new as them.
+     */
+    public void checkpoint() {
+        long covered = journal.position();
+        saveBorrowRecords();
+        saveMembers();
+        saveBooks();
+        fileIO.flushPendingSaves(); // files must be on disk before the journal goes
+        fileIO.saveSnapshot(snapshotFile, allBooks(), allMembers(), getAllBorrowRecords());
+        journal.checkpoint(covered);
+        System.out.println("[BorrowService] Checkpoint written, journal compacted");
+    }
+
+    private void checkpointIfNeeded() {
+        if (journal.size() >= CHECKPOINT_INTERVAL) {
+            checkpoint();
+        }
+    }
+
+    // Array lookup by book key instead of a scan of the history
+    private BorrowRecord findOpenRecord(String bookId, String memberId) {
+        return openLoans.find(bookId, memberId);
+    }
+
+    /**
+     * Re-applies the journal entries after the last checkpoint. The journal already
+     * skips covered entries; the rest may still be partly in the files (a crash in the
+     * middle of a checkpoint, or books.txt saved after a reservation), so each entry
+     * is applied only where it is missing. The borrow record decides: a borrow whose
+     * (book, member, borrow date) record exists is not added again, and a return only
+     * closes an open record. Book and member state follow the record.
+     */
+    private class JournalReplayer implements BorrowJournal.EntryHandler {
+        private Map<String, BorrowRecord> loaded; // book|member|borrowDate -> record, built on first use
+
+        @Override
+        public void onBorrow(String bookId, String memberId, String memberName, LocalDate borrowDate, int borrowCount) {
+            Book book = bookMap.get(bookId);
+            if (book == null) return;
+
+            String key = bookId + "|" + memberId + "|" + borrowDate;
+            BorrowRecord record = records().get(key);
+            if (record == null) {
+                record = new BorrowRecord(bookId, memberId, memberName, borrowDate);
+                borrowRecords.addLast(record);
+                openLoans.open(record);
+                historyStore.append(record);
+                records().put(key, record);
+            }
+            if (borrowCount > book.getBorrowCount()) book.setBorrowCount(borrowCount);
+            if (record.getReturnDate() != null) return; // returned later on, already in the files
+
+            book.setAvailable(false);
+            book.setCurrentBorrower(memberId, memberName);
+            Member member = memberMap.get(memberId);
+            if (member != null) member.borrowBook(bookId);
+        }
+
+        @Override
+        public void onReturn(String bookId, String memberId, LocalDate returnDate, int borrowCount) {
+            Book book = bookMap.get(bookId);
+            if (book == null) return;
+
+            BorrowRecord record = findOpenRecord(bookId, memberId);
+            if (record != null) {
+                record.setReturnDate(returnDate);
+                openLoans.close(record);
+                historyStore.update(record);
+            }
+            Member member = memberMap.get(memberId);
+            if (member != null) member.returnBook(bookId);
+            // The files may already show the book lent to the next member
+            if (memberId.equals(book.getCurrentBorrowerId())) {
+                book.setAvailable(true);
+                book.clearCurrentBorrower();
+            }
+        }
+
+        private Map<String, BorrowRecord> records() {
+            if (loaded == null) {
+                loaded = new HashMap<>();
+                for (BorrowRecord r : borrowRecords) {
+                    loaded.put(r.getBookId() + "|" + r.getMemberId() + "|" + r.getBorrowDate(), r);
+                }
+            }
+            return loaded;
+        }
     }
 
     // ===============================
     // 🔽 Save Utilities
     // ===============================
     private void saveBooks() {
-        List<Book> bookList = new ArrayList<>();
-        for (int i = 0; i < books.size(); i++) bookList.add(books.get(i));
-        fileIO.saveBooksAlphabetically(booksFile, bookList);
+        fileIO.saveBooksLater(booksFile, allBooks());
+    }
+
+    private List<Book> allBooks() {
+        List<Book> bookList = new ArrayList<>(books.size());
+        for (Book b : books) bookList.add(b);
+        return bookList;
     }
 
     private void saveMembers() {
+        // ✅ Direct save without reloading
+        fileIO.saveMembersLater(membersFile, allMembers());
+    }
+
+    private List<Member> allMembers() {
         // ✅ Build list from memberMap (which has the updated members)
         List<Member> memberList = new ArrayList<>();
         
         // Get all members from the map (these are the updated ones)
-        for (int i = 0; i < members.size(); i++) {
-            Member m = members.get(i);
+        for (Member m : members) {
             Member fromMap = memberMap.get(m.getId());
             if (fromMap != null) {
                 memberList.add(fromMap);
             }
         }
-        
-        // ✅ Direct save without reloading
-        fileIO.saveMembers(membersFile, memberList);
+        return memberList;
     }
 
     private void saveBorrowRecords() {
-        List<BorrowRecord> recordList = new ArrayList<>();
-        for (int i = 0; i < borrowRecords.size(); i++) recordList.add(borrowRecords.get(i));
-        fileIO.saveBorrowRecords(recordsFile, recordList);
-        System.out.println("[BorrowService] Saved " + recordList.size() + " borrow records to file");
+        List<BorrowRecord> recordList = getAllBorrowRecords();
+        fileIO.saveBorrowRecordsLater(recordsFile, recordList);
+        System.out.println("[BorrowService] Queued save of " + recordList.size() + " borrow records");
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package service_implementation;
+
+import utils.MpscQueue_Imp;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * CirculationLoop - single writer thread for borrow / return / reserve operations.
+ *
+ * Desk terminals submit operations from any thread; each call only enqueues onto a
+ * lock-free MpscQueue_Imp and returns a CompletableFuture right away. One thread
+ * ("circulation-loop") drains the queue in batches of up to MAX_BATCH and applies the
+ * operations to BorrowService / MemberService in arrival order, so they never run
+ * at the same time and the services need no extra locking for them.
+ *
+ * Futures are completed on the loop thread. Callers that do real work in a callback
+ * (e.g. updating Swing) should use thenAcceptAsync / SwingUtilities.invokeLater so
+ * the loop is not held up.
+ *
+ * close() stops accepting work, lets the loop finish what is queued, and waits for it.
+ */
+public class CirculationLoop implements AutoCloseable {
+
+    private static final int MAX_BATCH = 64;
+
+    private final BorrowService borrowService;
+    private final MemberService memberService;
+    private final MpscQueue_Imp<Operation<?>> queue = new MpscQueue_Imp<>();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final AtomicInteger submitting = new AtomicInteger(); // submit() calls in progress
+    private final Thread writer;
+    private volatile boolean parked; // writer is (about to be) parked waiting for work
+    private long applied = 0;        // loop thread only
+    private long batches = 0;
+
+    // A queued operation and the future its result goes to
+    private static final class Operation<T> {
+        final Supplier<T> action;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Operation(Supplier<T> action) {
+            this.action = action;
+        }
+
+        // Never throws: an Error must not kill the loop and leave later futures pending
+        void run() {
+            try {
+                result.complete(action.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+
+    public CirculationLoop(BorrowService borrowService, MemberService memberService) {
+        this.borrowService = borrowService;
+        this.memberService = memberService;
+        this.writer = new Thread(this::runLoop, "circulation-loop");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // ========== SUBMITTING (any thread) ==========
+
+    public CompletableFuture<Boolean> borrowBook(String memberId, String bookId, LocalDate borrowDate) {
+        return submit(() -> borrowService.borrowBook(memberId, bookId, borrowDate));
+    }
+
+    public CompletableFuture<Boolean> returnBook(String memberId, String bookId, LocalDate returnDate) {
+        return submit(() -> borrowService.returnBook(memberId, bookId, returnDate));
+    }
+
+    public CompletableFuture<Boolean> addReservation(String memberId, String bookId) {
+        return submit(() -> memberService.addReservation(memberId, bookId));
+    }
+
+    public CompletableFuture<Boolean> removeReservation(String memberId, String bookId) {
+        return submit(() -> memberService.removeReservation(memberId, bookId));
+    }
+
+    /**
+     * Runs any other operation on the loop thread, in order with the rest.
+     * After close() the future fails with IllegalStateException.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> action) {
+        Operation<T> op = new Operation<>(action);
+        submitting.incrementAndGet(); // the loop does not stop while this is non-zero
+        try {
+            if (!running.get()) {
+                op.result.completeExceptionally(new IllegalStateException("Circulation loop is closed"));
+                return op.result;
+            }
+            queue.enqueue(op);
+        } finally {
+            submitting.decrementAndGet();
+        }
+        if (parked) LockSupport.unpark(writer);
+        return op.result;
+    }
+
+    // ========== LOOP THREAD ==========
+
+    private void runLoop() {
+        while (true) {
+            int n = queue.drain(Operation::run, MAX_BATCH);
+            if (n > 0) {
+                applied += n;
+                batches++;
+                continue;
+            }
+            if (!running.get()) {
+                // Operations submitted just before close() are still applied
+                if (submitting.get() == 0 && queue.isEmpty()) break;
+                Thread.onSpinWait();
+                continue;
+            }
+            parked = true;
+            if (queue.isEmpty() && running.get()) LockSupport.park(this);
+            parked = false;
+        }
+        System.out.println("[CirculationLoop] Stopped after " + applied + " operations in " + batches + " batches");
+    }
+
+    @Override
+    public void close() {
+        if (!running.getAndSet(false)) return;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,118 +2,358 @@ package service_implementation;
 
 import service_interface.FileIOInterface;
 import model.*;
+import utils.LineTokenizer;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class FileIOService implements FileIOInterface {
 
+    private final PersistenceScheduler scheduler;
+
+    public FileIOService() {
+        this(PersistenceScheduler.getShared());
+    }
+
+    public FileIOService(PersistenceScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public PersistenceScheduler getScheduler() {
+        return scheduler;
+    }
+
+    // ========== WRITE-BEHIND SAVES ==========
+    // The rows are serialized now, on the caller's thread, so the background flush
+    // never reads a Book/Member/BorrowRecord that is still being changed. The
+    // scheduler writes them within its window; repeated requests for the same file
+    // in that window collapse into one write. Files are written in dependency order:
+    // borrow records, then members, then books (BorrowService.checkpoint relies on
+    // books.txt never being ahead of the records).
+
+    private static final int RECORDS_ORDER = 0;
+    private static final int MEMBERS_ORDER = 1;
+    private static final int BOOKS_ORDER = 2;
+
+    public void saveBooksLater(String filename, List<Book> books) {
+        PendingBooks pending = pendingBooks.computeIfAbsent(filename, f -> new PendingBooks());
+        synchronized (pending) {
+            pending.rows = bookRows(books, pending.changedIds); // changes accumulate until written
+        }
+        scheduler.markDirty(filename, BOOKS_ORDER, () -> writePendingBooks(filename));
+    }
+
+    public void saveMembersLater(String filename, List<Member> members) {
+        boolean changed = false;
+        for (Member m : members) {
+            changed |= m.isDirty();
+        }
+        Integer saved = savedMemberCounts.get(filename);
+        if (!changed && saved != null && saved == members.size()) return; // file (or the pending save) is current
+        List<String> lines = memberLines(members);
+        savedMemberCounts.put(filename, lines.size());
+        scheduler.markDirty(filename, MEMBERS_ORDER, () -> writeMemberLines(filename, lines));
+    }
+
+    public void saveBorrowRecordsLater(String filename, List<BorrowRecord> records) {
+        List<String> lines = new ArrayList<>(records.size());
+        for (BorrowRecord r : records) lines.add(r.toString());
+        scheduler.markDirty(filename, RECORDS_ORDER, () -> writeRecordLines(filename, lines));
+    }
+
+    // Writes every pending save now
+    public void flushPendingSaves() {
+        scheduler.flush();
+    }
+
     // ========== BOOKS ==========
-    @Override
-    public void saveBooks(String filename, List<Book> books) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename, false))) {
-            for (Book b : books) {
-                // Use the Book's toString() method which has the complete format
-                writer.write(b.toString());
-                writer.newLine();
+    // books.txt rows are padded with spaces to a fixed slot size. A row-offset index
+    // (built whenever the whole file is written) lets a changed book be rewritten in
+    // place without touching the rest of the file. Loaders trim the padding.
+    // Full saves of all three data files go through SnapshotFile (temp file, checksum
+    // trailer, fsync, atomic rename); loaders skip the trailer line.
+
+    private static final int SLOT_ALIGN = 64;   // slots are multiples of this many bytes
+    private static final int SLOT_SPARE = 32;   // room for a row to grow (e.g. borrower name)
+
+    // One index per file, shared by every FileIOService since they all write the same files
+    private static final Map<String, BookRowIndex> bookRowIndexes = new ConcurrentHashMap<>();
+
+    private static class BookRowIndex {
+        final Map<String, long[]> slots = new HashMap<>(); // bookId -> {offset, slot length}
+        long fileLength;
+    }
+
+    // One book's row, serialized when its save was requested
+    private static final class BookRow {
+        final String id;
+        final String title;
+        final String line;
+
+        BookRow(Book b) {
+            this.id = b.getId();
+            this.title = b.getTitle();
+            this.line = b.toString();
+        }
+    }
+
+    // A books file waiting for the scheduler: the latest rows, and the ids of every
+    // book that changed since the file was last written (kept across replaced requests)
+    private static final class PendingBooks {
+        List<BookRow> rows;
+        final Set<String> changedIds = new HashSet<>();
+    }
+
+    private static final Map<String, PendingBooks> pendingBooks = new ConcurrentHashMap<>();
+
+    /**
+     * Serializes every book and clears its dirty flag (before reading it, so a change
+     * made meanwhile stays dirty). The ids of books that were dirty go into changedIds
+     * unless it is null.
+     */
+    private static List<BookRow> bookRows(List<Book> books, Set<String> changedIds) {
+        List<BookRow> rows = new ArrayList<>(books.size());
+        for (Book b : books) {
+            if (b.isDirty()) {
+                b.clearDirty();
+                if (changedIds != null) changedIds.add(b.getId());
             }
-        } catch (IOException e) {
-            System.out.println("Error saving books: " + e.getMessage());
+            rows.add(new BookRow(b));
+        }
+        return rows;
+    }
+
+    // Scheduler task: writes whatever saveBooksLater collected for the file
+    private void writePendingBooks(String filename) {
+        PendingBooks pending = pendingBooks.get(filename);
+        List<BookRow> rows;
+        Set<String> changedIds;
+        synchronized (pending) {
+            if (pending.rows == null) return; // already written by an earlier flush
+            rows = pending.rows;
+            changedIds = new HashSet<>(pending.changedIds);
+            pending.rows = null;
+            pending.changedIds.clear();
         }
+        updateBookRows(filename, rows, changedIds);
+    }
+
+    @Override
+    public void saveBooks(String filename, List<Book> books) {
+        writeBookRows(filename, bookRows(books, null));
     }
- // Add this method to FileIOService.java class (after the existing saveBooks method)
 
     /**
      * Saves books to file in alphabetical order by title
      */
     public void saveBooksAlphabetically(String filename, List<Book> books) {
+        writeRowsAlphabetically(filename, bookRows(books, null));
+    }
+
+    private void writeRowsAlphabetically(String filename, List<BookRow> rows) {
         // Create a sorted copy
-        List<Book> sortedBooks = new ArrayList<>(books);
-        sortedBooks.sort((a, b) -> a.getTitle().compareToIgnoreCase(b.getTitle()));
+        List<BookRow> sortedRows = new ArrayList<>(rows);
+        sortedRows.sort((a, b) -> a.title.compareToIgnoreCase(b.title));
         
         // Save the sorted list
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename, false))) {
-            for (Book b : sortedBooks) {
-                writer.write(b.toString());
-                writer.newLine();
-            }
+        if (writeBookRows(filename, sortedRows)) {
             System.out.println("[FileIO] Books saved alphabetically to " + filename);
+        }
+    }
+
+    /**
+     * Writes only the books whose dirty flag is set, each into its own slot.
+     * Falls back to a full alphabetical save when there is no index for the file,
+     * the set of books changed, or a row outgrew its slot.
+     */
+    public void saveDirtyBooks(String filename, List<Book> books) {
+        Set<String> changedIds = new HashSet<>();
+        List<BookRow> rows = bookRows(books, changedIds);
+        updateBookRows(filename, rows, changedIds);
+    }
+
+    private void updateBookRows(String filename, List<BookRow> bookRows, Set<String> changedIds) {
+        BookRowIndex index = bookRowIndexes.get(filename);
+        File file = new File(filename);
+        if (index == null || index.fileLength != file.length() || index.slots.size() != bookRows.size()) {
+            writeRowsAlphabetically(filename, bookRows);
+            return;
+        }
+
+        List<long[]> positions = new ArrayList<>();
+        List<byte[]> rows = new ArrayList<>();
+        for (BookRow b : bookRows) {
+            if (!changedIds.contains(b.id)) continue;
+            long[] slot = index.slots.get(b.id);
+            if (slot == null) {
+                writeRowsAlphabetically(filename, bookRows);
+                return;
+            }
+            byte[] row = paddedRow(b.line, (int) slot[1]);
+            if (row == null) {
+                writeRowsAlphabetically(filename, bookRows);
+                return;
+            }
+            positions.add(slot);
+            rows.add(row);
+        }
+        if (rows.isEmpty()) return;
+
+        try {
+            SnapshotFile.overwriteRows(filename, positions, rows); // also adjusts the checksum trailer
+            System.out.println("[FileIO] Updated " + rows.size() + " book row(s) in place in " + filename);
+        } catch (IOException e) {
+            System.out.println("Error updating books: " + e.getMessage());
+            bookRowIndexes.remove(filename);
+        }
+    }
+
+    // Writes every book into a padded slot (as an atomic snapshot) and rebuilds the row index
+    private boolean writeBookRows(String filename, List<BookRow> books) {
+        BookRowIndex index = new BookRowIndex();
+        long offset = 0;
+        try (SnapshotFile.Writer out = SnapshotFile.create(filename)) {
+            for (BookRow b : books) {
+                byte[] row = paddedRow(b.line, 0);
+                out.writeRow(row);
+                index.slots.put(b.id, new long[]{offset, row.length});
+                offset += row.length;
+            }
+            out.commit();
         } catch (IOException e) {
             System.out.println("Error saving books: " + e.getMessage());
+            bookRowIndexes.remove(filename);
+            return false;
         }
+        index.fileLength = new File(filename).length();
+        bookRowIndexes.put(filename, index);
+        return true;
+    }
+
+    /**
+     * Encodes a row padded with spaces and ending in '\n'. With slotLength 0 a new
+     * slot size is chosen; otherwise returns null if the row does not fit the slot.
+     */
+    private static byte[] paddedRow(String line, int slotLength) {
+        byte[] content = line.getBytes(StandardCharsets.UTF_8);
+        if (slotLength == 0) {
+            int needed = content.length + 1 + SLOT_SPARE;
+            slotLength = ((needed + SLOT_ALIGN - 1) / SLOT_ALIGN) * SLOT_ALIGN;
+        } else if (content.length + 1 > slotLength) {
+            return null;
+        }
+        byte[] row = new byte[slotLength];
+        System.arraycopy(content, 0, row, 0, content.length);
+        Arrays.fill(row, content.length, slotLength - 1, (byte) ' ');
+        row[slotLength - 1] = '\n';
+        return row;
     }
 
     @Override
     public void appendBook(String filename, Book book) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename, true))) {
-            writer.write(book.toString());
-            writer.newLine();
+        scheduler.flush(filename);
+        BookRowIndex index = bookRowIndexes.get(filename);
+        File file = new File(filename);
+        long lengthBefore = file.length();
+        byte[] row = paddedRow(book.toString(), 0);
+        long offset;
+        try {
+            offset = SnapshotFile.append(filename, row); // goes before the checksum trailer
+            book.clearDirty();
         } catch (IOException e) {
             System.out.println("Error appending book: " + e.getMessage());
+            bookRowIndexes.remove(filename);
+            return;
+        }
+        if (index != null && index.fileLength == lengthBefore) {
+            index.slots.put(book.getId(), new long[]{offset, row.length});
+            index.fileLength = file.length();
+        } else {
+            bookRowIndexes.remove(filename);
         }
     }
 
     @Override
     public List<Book> loadBooks(String filename) {
+        scheduler.flush(filename); // read our own pending writes
         List<Book> books = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
             String line;
             while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                // Format: id,title,author,category,available/borrowed,currentBorrower(ID:Name),borrowCount,queue
-                if (parts.length >= 8) {
-                    String id = parts[0];
-                    String title = parts[1];
-                    String author = parts[2];
-                    String category = parts[3];
-                    
-                    Book book = new Book(id, title, author, category);
-                    
-                    // Set availability
-                    book.setAvailable(parts[4].equals("available"));
-                    
-                    // Set current borrower
-                    if (!parts[5].equals("none")) {
-                        String[] borrowerParts = parts[5].split(":");
-                        if (borrowerParts.length == 2) {
-                            book.setCurrentBorrower(borrowerParts[0], borrowerParts[1]);
-                        }
-                    }
-                    
-                    // Set borrow count
-                    int borrowCount = Integer.parseInt(parts[6]);
-                    for (int i = 0; i < borrowCount; i++) {
-                        book.incrementBorrowCount();
-                    }
-                    
-                    // Parse reservation queue
-                    String queueStr = parts[7];
-                    if (!queueStr.equals("[none]")) {
-                        // Remove brackets
-                        queueStr = queueStr.substring(1, queueStr.length() - 1);
-                        if (!queueStr.isEmpty()) {
-                            String[] reservations = queueStr.split(";");
-                            for (String reservation : reservations) {
-                                String[] resParts = reservation.split(":");
-                                if (resParts.length == 2) {
-                                    book.addToReservationQueue(resParts[0], resParts[1]);
-                                }
-                            }
-                        }
-                    }
-                    
-                    books.add(book);
-                }
+                Book book = parseBook(line);
+                if (book != null) books.add(book);
             }
         } catch (IOException e) {
             System.out.println("Error loading books: " + e.getMessage());
+        }
+        return books;
+    }
+
+    /**
+     * Parses one line of books.txt.
+     * Format: id,title,author,category,available/borrowed,currentBorrower(ID:Name),borrowCount,queue
+     * Fields are read with a per-thread LineTokenizer, so quoted values ("a, b") are supported.
+     * Returns null if the line is blank or malformed.
+     */
+    public Book parseBook(String line) {
+        if (line.isEmpty() || line.charAt(0) == '#') return null; // checksum trailer
+        LineTokenizer tok = TOKENIZER.get();
+        tok.reset(line); // rows are padded to their slot size; reset() drops the padding
+        try {
+            if (!tok.next(',')) return null;
+            String id = tok.fieldString();
+            if (id.isEmpty() || !tok.next(',')) return null;
+            String title = tok.fieldString();
+            if (!tok.next(',')) return null;
+            String author = tok.fieldString();
+            if (!tok.next(',')) return null;
+            String category = tok.fieldString();
+            
+            Book book = BookService.newBook(id, title, author, category);
+            
+            // Set availability
+            if (!tok.next(',')) return null;
+            book.setAvailable(tok.fieldEquals("available"));
+            
+            // Set current borrower (ID:Name or none)
+            if (!tok.next(':', ',')) return null;
+            if (tok.lastDelimiter() == ':') {
+                String borrowerId = tok.fieldString();
+                if (!tok.next(',')) return null;
+                book.setCurrentBorrower(borrowerId, tok.fieldString());
+            }
+            
+            // Set borrow count
+            if (!tok.next(',')) return null;
+            book.setBorrowCount(tok.fieldInt());
+            
+            // Parse reservation queue: [none] or [ID:Name;ID:Name]
+            if (!tok.skip('[')) return null;
+            while (tok.next(':', ']') && tok.lastDelimiter() == ':') {
+                String memberId = tok.fieldString();
+                if (!tok.next(';', ']')) break;
+                book.addToReservationQueue(memberId, tok.fieldString());
+                if (tok.lastDelimiter() == ']') break;
+            }
+            
+            book.clearDirty();
+            return book;
         } catch (NumberFormatException e) {
             System.out.println("Error parsing book data: " + e.getMessage());
+            return null;
         }
-        return books;
     }
 
+    // One tokenizer per thread: StartupLoader parses files on several threads at once
+    private static final ThreadLocal<LineTokenizer> TOKENIZER = ThreadLocal.withInitial(LineTokenizer::new);
+
     @Override
     public void deleteBook(String filename, String bookId) {
         List<Book> books = loadBooks(filename);
@@ -124,105 +364,137 @@ public class FileIOService implements FileIOInterface {
     // ========== MEMBERS ==========
     @Override
     public void saveMembers(String filename, List<Member> members) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename, false))) {
-            for (Member m : members) {
-                // Format: id,name,borrowedBooks,reservations
-                StringBuilder sb = new StringBuilder();
-                sb.append(m.getId()).append(",");
-                sb.append(m.getName()).append(",");
-                
-                // Save borrowed book IDs
-                utils.SinglyLinkedList_Imp<String> borrowed = m.getBorrowedBookIds();
-                if (borrowed.isEmpty()) {
-                    sb.append("[none]");
-                } else {
-                    sb.append("[");
-                    for (int i = 0; i < borrowed.size(); i++) {
-                        sb.append(borrowed.get(i));
-                        if (i < borrowed.size() - 1) sb.append(";");
-                    }
-                    sb.append("]");
+        writeMemberLines(filename, memberLines(members));
+    }
+
+    // Serializes every member and clears its dirty flag
+    private static List<String> memberLines(List<Member> members) {
+        List<String> lines = new ArrayList<>(members.size());
+        for (Member m : members) {
+            m.clearDirty();
+            // Format: id,name,borrowedBooks,reservations
+            StringBuilder sb = new StringBuilder();
+            sb.append(LineTokenizer.quote(m.getId())).append(",");
+            sb.append(LineTokenizer.quote(m.getName())).append(",");
+            
+            // Save borrowed book IDs
+            List<String> borrowed = m.getBorrowedBookIds();
+            if (borrowed.isEmpty()) {
+                sb.append("[none]");
+            } else {
+                sb.append("[");
+                boolean first = true;
+                for (String bookId : borrowed) {
+                    if (!first) sb.append(";");
+                    sb.append(LineTokenizer.quote(bookId));
+                    first = false;
                 }
-                sb.append(",");
-                
-                // Save reservation queue
-                utils.SinglyLinkedList_Imp<String> reservations = m.getReservationQueue();
-                if (reservations.isEmpty()) {
-                    sb.append("[none]");
-                } else {
-                    sb.append("[");
-                    for (int i = 0; i < reservations.size(); i++) {
-                        sb.append(reservations.get(i));
-                        if (i < reservations.size() - 1) sb.append(";");
-                    }
-                    sb.append("]");
+                sb.append("]");
+            }
+            sb.append(",");
+            
+            // Save reservation queue
+            List<String> reservations = m.getReservationQueue();
+            if (reservations.isEmpty()) {
+                sb.append("[none]");
+            } else {
+                sb.append("[");
+                boolean first = true;
+                for (String bookId : reservations) {
+                    if (!first) sb.append(";");
+                    sb.append(LineTokenizer.quote(bookId));
+                    first = false;
                 }
-                
-                writer.write(sb.toString());
-                writer.newLine();
+                sb.append("]");
+            }
+            
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+
+    private void writeMemberLines(String filename, List<String> lines) {
+        try (SnapshotFile.Writer writer = SnapshotFile.create(filename)) {
+            for (String line : lines) {
+                writer.writeLine(line);
             }
+            writer.commit();
+            savedMemberCounts.put(filename, lines.size());
         } catch (IOException e) {
             System.out.println("Error saving members: " + e.getMessage());
+            savedMemberCounts.remove(filename);
         }
     }
 
+    // Rows written (or queued) per members file, so a save with nothing dirty can be skipped
+    private static final Map<String, Integer> savedMemberCounts = new ConcurrentHashMap<>();
+
     @Override
     public void appendMember(String filename, Member member) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename, true))) {
-            writer.write(member.toString());
-            writer.newLine();
+        try {
+            SnapshotFile.append(filename, (member.toString() + "\n").getBytes(StandardCharsets.UTF_8));
         } catch (IOException e) {
             System.out.println("Error appending member: " + e.getMessage());
         }
     }
 
     public List<Member> loadMembers(String filename) {
+        scheduler.flush(filename); // read our own pending writes
         List<Member> members = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
             String line;
             while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                // Format: id,name,borrowedBooks,reservations
-                if (parts.length >= 2) {
-                    String id = parts[0];
-                    String name = parts[1];
-                    Member member = new Member(id, name);
-                    
-                    // Load borrowed books (if exists)
-                    if (parts.length >= 3 && !parts[2].equals("[none]")) {
-                        String borrowedStr = parts[2];
-                        // Remove brackets
-                        borrowedStr = borrowedStr.substring(1, borrowedStr.length() - 1);
-                        if (!borrowedStr.isEmpty()) {
-                            String[] bookIds = borrowedStr.split(";");
-                            for (String bookId : bookIds) {
-                                member.borrowBook(bookId);
-                            }
-                        }
+                Member member = parseMember(line);
+                if (member != null) members.add(member);
+            }
+        } catch (IOException e) {
+            System.out.println("Error loading members: " + e.getMessage());
+        }
+        return members;
+    }
+
+    /**
+     * Parses one line of members.txt.
+     * Format: id,name,borrowedBooks,reservations
+     * Returns null if the line is blank or malformed.
+     */
+    public Member parseMember(String line) {
+        if (line.isEmpty() || line.charAt(0) == '#') return null;
+        LineTokenizer tok = TOKENIZER.get();
+        tok.reset(line);
+        try {
+            if (!tok.next(',')) return null;
+            String id = tok.fieldString();
+            if (id.isEmpty() || !tok.next(',')) return null;
+            Member member = new Member(id, tok.fieldString());
+            
+            // Load borrowed books (if exists)
+            if (tok.skip('[')) {
+                while (tok.next(';', ']')) {
+                    if (tok.fieldLength() > 0 && !tok.fieldEquals("none")) {
+                        member.borrowBook(tok.fieldString());
                     }
-                    
-                    // Load reservations (if exists)
-                    if (parts.length >= 4 && !parts[3].equals("[none]")) {
-                        String reservationStr = parts[3];
-                        // Remove brackets
-                        reservationStr = reservationStr.substring(1, reservationStr.length() - 1);
-                        if (!reservationStr.isEmpty()) {
-                            String[] bookIds = reservationStr.split(";");
-                            for (String bookId : bookIds) {
-                                member.addToReservationQueue(bookId);
-                            }
-                        }
+                    if (tok.lastDelimiter() != ';') break;
+                }
+                tok.skip(',');
+            }
+            
+            // Load reservations (if exists)
+            if (tok.skip('[')) {
+                while (tok.next(';', ']')) {
+                    if (tok.fieldLength() > 0 && !tok.fieldEquals("none")) {
+                        member.addToReservationQueue(tok.fieldString());
                     }
-                    
-                    members.add(member);
+                    if (tok.lastDelimiter() != ';') break;
                 }
             }
-        } catch (IOException e) {
-            System.out.println("Error loading members: " + e.getMessage());
+            
+            member.clearDirty();
+            return member;
         } catch (Exception e) {
             System.out.println("Error parsing member data: " + e.getMessage());
+            return null;
         }
-        return members;
     }
 
     @Override
@@ -235,12 +507,20 @@ public class FileIOService implements FileIOInterface {
     // ========== BORROW RECORDS ==========
     @Override
     public void saveBorrowRecords(String filename, List<BorrowRecord> records) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename, false))) {
-            for (BorrowRecord br : records) {
-                // Format: bookId,memberId,memberName,borrowDate,returnDate
-                writer.write(br.toString());
-                writer.newLine();
+        List<String> lines = new ArrayList<>(records.size());
+        for (BorrowRecord br : records) {
+            // Format: bookId,memberId,memberName,borrowDate,returnDate
+            lines.add(br.toString());
+        }
+        writeRecordLines(filename, lines);
+    }
+
+    private void writeRecordLines(String filename, List<String> lines) {
+        try (SnapshotFile.Writer writer = SnapshotFile.create(filename)) {
+            for (String line : lines) {
+                writer.writeLine(line);
             }
+            writer.commit();
         } catch (IOException e) {
             System.out.println("Error saving borrow records: " + e.getMessage());
         }
@@ -248,9 +528,8 @@ public class FileIOService implements FileIOInterface {
 
     @Override
     public void appendBorrowRecord(String filename, BorrowRecord record) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename, true))) {
-            writer.write(record.toString());
-            writer.newLine();
+        try {
+            SnapshotFile.append(filename, (record.toString() + "\n").getBytes(StandardCharsets.UTF_8));
         } catch (IOException e) {
             System.out.println("Error appending borrow record: " + e.getMessage());
         }
@@ -259,33 +538,79 @@ public class FileIOService implements FileIOInterface {
     @Override
     public List<BorrowRecord> loadBorrowRecords(String filename) {
         List<BorrowRecord> records = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                // Format: bookId,memberId,memberName,borrowDate,returnDate
-                if (parts.length >= 4) {
-                    String bookId = parts[0];
-                    String memberId = parts[1];
-                    String memberName = parts[2];
-                    LocalDate borrowDate = LocalDate.parse(parts[3]);
-                    
-                    BorrowRecord record = new BorrowRecord(bookId, memberId, memberName, borrowDate);
-                    
-                    // Set return date if present and not "not returned"
-                    if (parts.length == 5 && !parts[4].equals("not returned")) {
-                        record.setReturnDate(LocalDate.parse(parts[4]));
-                    }
-                    
-                    records.add(record);
-                }
+        try (BorrowRecordReader reader = openBorrowRecordReader(filename)) {
+            while (reader.hasNext()) {
+                records.add(reader.next());
             }
         } catch (IOException e) {
             System.out.println("Error loading borrow records: " + e.getMessage());
+        }
+        return records;
+    }
+
+    /**
+     * Parses one line of borrow_records.txt.
+     * Format: bookId,memberId,memberName,borrowDate,returnDate
+     * Returns null (and logs) if the line is malformed.
+     */
+    public BorrowRecord parseBorrowRecord(String line) {
+        if (line.isEmpty() || line.charAt(0) == '#') return null;
+        LineTokenizer tok = TOKENIZER.get();
+        tok.reset(line);
+        try {
+            if (!tok.next(',')) return null;
+            String bookId = tok.fieldString();
+            if (!tok.next(',')) return null;
+            String memberId = tok.fieldString();
+            if (!tok.next(',')) return null;
+            String memberName = tok.fieldString();
+            if (!tok.next(',')) return null;
+            BorrowRecord record = new BorrowRecord(bookId, memberId, memberName, tok.fieldDate());
+
+            // Set return date if present and not "not returned"
+            if (tok.next(',') && tok.fieldLength() > 0 && !tok.fieldEquals("not returned")) {
+                record.setReturnDate(tok.fieldDate());
+            }
+            return record;
         } catch (Exception e) {
             System.out.println("Error parsing borrow record: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ========== STREAMING BORROW RECORDS ==========
+    // For large histories: nothing is materialised, callers can stop at the first match.
+
+    public BorrowRecordReader openBorrowRecordReader(String filename) throws IOException {
+        scheduler.flush(filename); // read our own pending writes
+        return new BorrowRecordReader(filename, this);
+    }
+
+    /**
+     * Lazily streams the records in the file. The stream holds the file open,
+     * so use it in try-with-resources (closing the stream closes the file).
+     * A missing file gives an empty stream.
+     */
+    public Stream<BorrowRecord> streamBorrowRecords(String filename) {
+        try {
+            BorrowRecordReader reader = openBorrowRecordReader(filename);
+            return StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(reader, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(reader::close);
+        } catch (IOException e) {
+            System.out.println("Error loading borrow records: " + e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    // Finds the not-yet-returned record for a book/member pair, stopping at the first match
+    public BorrowRecord findOpenBorrowRecord(String filename, String bookId, String memberId) {
+        try (Stream<BorrowRecord> records = streamBorrowRecords(filename)) {
+            return records
+                    .filter(r -> r.getReturnDate() == null && r.getBookId().equals(bookId) && r.getMemberId().equals(memberId))
+                    .findFirst()
+                    .orElse(null);
         }
-        return records;
     }
 
     @Override
@@ -294,4 +619,47 @@ public class FileIOService implements FileIOInterface {
         records.removeIf(r -> r.getMemberId().equals(memberId) && r.getBookId().equals(bookId));
         saveBorrowRecords(filename, records);
     }
+
+    // ========== BINARY SNAPSHOT ==========
+    // The .txt files stay the import/export format; the snapshot is the fast path.
+
+    /**
+     * Writes books, members and borrow records into one binary snapshot file.
+     * See BinarySnapshot for the layout.
+     */
+    public void saveSnapshot(String filename, List<Book> books, List<Member> members, List<BorrowRecord> records) {
+        try {
+            BinarySnapshot.write(filename, books, members, records);
+        } catch (IOException e) {
+            System.out.println("Error saving snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Maps a snapshot file. Records are decoded lazily through the returned object.
+     * Returns null if the file is missing or not a valid snapshot.
+     */
+    public BinarySnapshot openSnapshot(String filename) {
+        if (!new File(filename).exists()) return null;
+        try {
+            return BinarySnapshot.open(filename);
+        } catch (IOException e) {
+            System.out.println("Error opening snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Converts the text files into a snapshot (e.g. once before switching startup over)
+    public void importTextToSnapshot(String booksFile, String membersFile, String recordsFile, String snapshotFile) {
+        saveSnapshot(snapshotFile, loadBooks(booksFile), loadMembers(membersFile), loadBorrowRecords(recordsFile));
+    }
+
+    // Writes the snapshot contents back out as the plain text files
+    public void exportSnapshotToText(String snapshotFile, String booksFile, String membersFile, String recordsFile) {
+        BinarySnapshot snapshot = openSnapshot(snapshotFile);
+        if (snapshot == null) return;
+        saveBooks(booksFile, snapshot.loadBooks());
+        saveMembers(membersFile, snapshot.loadMembers());
+        saveBorrowRecords(recordsFile, snapshot.loadBorrowRecords());
+    }
 }
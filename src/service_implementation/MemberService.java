@@ -3,15 +3,16 @@ package service_implementation;
 import service_interface.MemberServiceInterface;
 import model.*;
 import utils.SinglyLinkedList_Imp;
-import utils.HashMap_Imp;
+import utils.ConcurrentHashMap_Imp;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 public class MemberService implements MemberServiceInterface {
     private SinglyLinkedList_Imp<Member> members;
     private SinglyLinkedList_Imp<Book> books;
-    private HashMap_Imp<String, Member> memberMap; // Fast member lookup
-    private HashMap_Imp<String, Book> bookMap; // Fast book lookup
+    private ConcurrentHashMap_Imp<String, Member> memberMap; // Fast member lookup, safe to share between terminals
+    private ConcurrentHashMap_Imp<String, Book> bookMap; // Fast book lookup
     private FileIOService fileIO;
     private final String membersFile = "members.txt";
     private final String booksFile = "books.txt";
@@ -21,7 +22,7 @@ public class MemberService implements MemberServiceInterface {
         
         // Initialize members with dual storage
         this.members = new SinglyLinkedList_Imp<>();
-        this.memberMap = new HashMap_Imp<>();
+        this.memberMap = new ConcurrentHashMap_Imp<>(membersList.size());
         for (Member member : membersList) {
             members.addLast(member);
             memberMap.put(member.getId(), member);
@@ -29,7 +30,7 @@ public class MemberService implements MemberServiceInterface {
         
         // Initialize books with dual storage
         this.books = new SinglyLinkedList_Imp<>();
-        this.bookMap = new HashMap_Imp<>();
+        this.bookMap = new ConcurrentHashMap_Imp<>(booksList.size());
         for (Book book : booksList) {
             books.addLast(book);
             bookMap.put(book.getId(), book);
@@ -42,11 +43,11 @@ public class MemberService implements MemberServiceInterface {
             member.setId(generateMemberId());
         }
 
-        if (memberMap.containsKey(member.getId())) {
+        // putIfAbsent: check and insert in one step, so an id cannot be taken twice
+        if (memberMap.putIfAbsent(member.getId(), member) != null) {
             return false;
         }
         members.addLast(member);
-        memberMap.put(member.getId(), member);
         saveMembers();
         return true;
     }
@@ -70,21 +71,17 @@ public class MemberService implements MemberServiceInterface {
 
     @Override
     public List<Member> searchMembersByName(String name) {
-        List<Member> result = new ArrayList<>();
-        for (int i = 0; i < members.size(); i++) {
-            Member member = members.get(i);
-            if (member.getName().toLowerCase().contains(name.toLowerCase())) {
-                result.add(member);
-            }
-        }
-        return result;
+        String needle = name.toLowerCase();
+        return members.stream()
+                .filter(member -> member.getName().toLowerCase().contains(needle))
+                .collect(Collectors.toList());
     }
 
     @Override
     public List<Member> getAllMembers() {
-        List<Member> memberList = new ArrayList<>();
-        for (int i = 0; i < members.size(); i++) {
-            memberList.add(members.get(i));
+        List<Member> memberList = new ArrayList<>(members.size());
+        for (Member member : members) {
+            memberList.add(member);
         }
         return memberList;
     }
@@ -114,7 +111,7 @@ public class MemberService implements MemberServiceInterface {
         Book book = bookMap.get(bookId);
 
         if (member == null || book == null) return false;
-        if (member.getBorrowedBookIds().indexOf(bookId) == -1) return false;
+        if (!member.hasBorrowed(bookId)) return false;
 
         member.returnBook(bookId);
 
@@ -144,6 +141,7 @@ public class MemberService implements MemberServiceInterface {
         Book book = bookMap.get(bookId);
 
         if (member == null || book == null) return false;
+        if (book.hasReservation(memberId)) return false; // already in the queue
 
         member.addToReservationQueue(bookId);
         book.addToReservationQueue(memberId, member.getName());
@@ -162,22 +160,7 @@ public class MemberService implements MemberServiceInterface {
         if (member == null || book == null) return false;
 
         member.removeFromReservationQueue(bookId);
-        
-        utils.Queue_Imp<String> tempIds = new utils.Queue_Imp<>();
-        utils.Queue_Imp<String> tempNames = new utils.Queue_Imp<>();
-        
-        while (book.getReservationQueue() != null && !book.getReservationQueue().isEmpty()) {
-            String id = book.getReservationQueue().dequeue();
-            String name = book.getReservationQueueNames().dequeue();
-            if (!id.equals(memberId)) {
-                tempIds.enqueue(id); 
-                tempNames.enqueue(name);
-            }
-        }
-        
-        while (!tempIds.isEmpty()) {
-            book.addToReservationQueue(tempIds.dequeue(), tempNames.dequeue());
-        }
+        book.removeReservation(memberId); // removes from the id and name queues together
         
         saveMembers();
         saveBooks();
@@ -190,26 +173,22 @@ public class MemberService implements MemberServiceInterface {
         if (members.isEmpty()) {
             System.out.println("No members found.");
         } else {
-            for (int i = 0; i < members.size(); i++) {
-                System.out.println(members.get(i));
+            for (Member member : members) {
+                System.out.println(member);
             }
         }
     }
 
     private void saveMembers() {
-        List<Member> memberList = new ArrayList<>();
-        for (int i = 0; i < members.size(); i++) {
-            memberList.add(members.get(i));
-        }
-        fileIO.saveMembers(membersFile, memberList);
+        fileIO.saveMembersLater(membersFile, getAllMembers());
     }
 
     private void saveBooks() {
-        List<Book> bookList = new ArrayList<>();
-        for (int i = 0; i < books.size(); i++) {
-            bookList.add(books.get(i));
+        List<Book> bookList = new ArrayList<>(books.size());
+        for (Book book : books) {
+            bookList.add(book);
         }
-        fileIO.saveBooksAlphabetically(booksFile, bookList);
+        fileIO.saveBooksLater(booksFile, bookList);
     }
 
     public Member findMemberByName(String name) {
@@ -223,8 +202,7 @@ public class MemberService implements MemberServiceInterface {
     // ✅ Auto-generate M001, M002, etc.
     private String generateMemberId() {
         int maxId = 0;
-        for (int i = 0; i < members.size(); i++) {
-            Member member = members.get(i);
+        for (Member member : members) {
             String id = member.getId();
             if (id != null && id.startsWith("M")) {
                 try {
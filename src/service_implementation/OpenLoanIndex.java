@@ -0,0 +1,85 @@
+package service_implementation;
+
+import model.BorrowRecord;
+import model.Dictionaries;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * OpenLoanIndex - the loans that are currently out, keyed by dense book/member keys.
+ *
+ * Every BorrowRecord carries the int keys of its book and member from the shared
+ * Dictionaries.BOOK_IDS / MEMBER_IDS. Open loans sit in a list per book key and a list
+ * per member key, so "is this book out to this member" and "what does this member
+ * have" cost a look at a short list instead of a scan of the history; the String ids
+ * are only turned into keys once per call. A book is normally out once, but the
+ * history can hold two open loans of the same book (e.g. an edited
+ * borrow_records.txt); both are kept, like the scan would find both.
+ *
+ * Results come back in history order (the order records were opened), the order a
+ * scan of borrow_records.txt would produce. All methods lock the index.
+ */
+public class OpenLoanIndex {
+
+    private final ArrayList<List<BorrowRecord>> loansByBook = new ArrayList<>();   // open loans per book key
+    private final ArrayList<List<BorrowRecord>> loansByMember = new ArrayList<>(); // open loans per member key
+    private final LinkedHashSet<BorrowRecord> open = new LinkedHashSet<>(); // all, in history order
+
+    // Adds the record to the open loans if it has no return date
+    public synchronized void open(BorrowRecord record) {
+        if (record.getReturnDate() != null || !open.add(record)) return;
+        add(loansByBook, record.getBookKey(), record);
+        add(loansByMember, record.getMemberKey(), record);
+    }
+
+    // Forgets the record as an open loan (call once its return date is set)
+    public synchronized void close(BorrowRecord record) {
+        if (!open.remove(record)) return;
+        List<BorrowRecord> byBook = get(loansByBook, record.getBookKey());
+        List<BorrowRecord> byMember = get(loansByMember, record.getMemberKey());
+        if (byBook != null) byBook.remove(record);
+        if (byMember != null) byMember.remove(record);
+    }
+
+    // The first open loan of bookId by memberId, or null
+    public synchronized BorrowRecord find(String bookId, String memberId) {
+        List<BorrowRecord> loans = get(loansByBook, Dictionaries.BOOK_IDS.find(bookId));
+        int member = Dictionaries.MEMBER_IDS.find(memberId);
+        if (loans == null || member < 0) return null;
+        for (BorrowRecord record : loans) {
+            if (record.getMemberKey() == member) return record;
+        }
+        return null;
+    }
+
+    // Ids of the books memberId has out, one per open loan, in history order
+    public synchronized List<String> bookIdsOf(String memberId) {
+        List<String> result = new ArrayList<>();
+        List<BorrowRecord> loans = get(loansByMember, Dictionaries.MEMBER_IDS.find(memberId));
+        if (loans == null) return result;
+        for (BorrowRecord record : loans) result.add(record.getBookId());
+        return result;
+    }
+
+    // Every open loan, in history order
+    public synchronized List<BorrowRecord> openLoans() {
+        return new ArrayList<>(open);
+    }
+
+    private static List<BorrowRecord> get(ArrayList<List<BorrowRecord>> lists, int key) {
+        return key >= 0 && key < lists.size() ? lists.get(key) : null;
+    }
+
+    private static void add(ArrayList<List<BorrowRecord>> lists, int key, BorrowRecord record) {
+        if (key < 0) return; // record without a book/member id
+        while (lists.size() <= key) lists.add(null);
+        List<BorrowRecord> loans = lists.get(key);
+        if (loans == null) {
+            loans = new ArrayList<>(1);
+            lists.set(key, loans);
+        }
+        loans.add(record);
+    }
+}
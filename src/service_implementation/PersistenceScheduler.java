@@ -0,0 +1,148 @@
+package service_implementation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PersistenceScheduler - write-behind saving with coalescing.
+ *
+ * Services and GUI screens mark a file dirty together with the task that saves it.
+ * Saves requested within the same window (50 ms by default) are merged: only the
+ * latest task per file runs, once, on a background thread. So a Borrow click that
+ * used to rewrite the same three files twice now writes each of them once.
+ *
+ * Every file has a write order, and pending files are always written lowest order
+ * first, whatever order the saves were requested in. FileIOService uses it to write
+ * borrow records before members before books, so a crash between two writes never
+ * leaves books.txt ahead of the records (see BorrowService.checkpoint).
+ *
+ * flush() runs everything that is pending on the calling thread; use it on shutdown,
+ * in tests, and before reading a file back (FileIOService does this in its loaders).
+ * flush(filename) also writes the pending files that come before it.
+ *
+ * The window can be changed with -Dlibrary.saveWindowMs=...
+ */
+public class PersistenceScheduler {
+
+    public static final long DEFAULT_WINDOW_MS = 50;
+
+    private static final PersistenceScheduler SHARED =
+            new PersistenceScheduler(Long.getLong("library.saveWindowMs", DEFAULT_WINDOW_MS));
+
+    private final long windowMillis;
+    private final ScheduledExecutorService executor;
+    private final Map<String, PendingSave> pending = new HashMap<>(); // file -> latest save task
+    private final Object writeLock = new Object(); // only one flush writes files at a time
+    private ScheduledFuture<?> scheduledFlush;
+    private long requested = 0;
+    private long written = 0;
+
+    private static final class PendingSave {
+        final int order;
+        final Runnable task;
+
+        PendingSave(int order, Runnable task) {
+            this.order = order;
+            this.task = task;
+        }
+    }
+
+    public PersistenceScheduler(long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "persistence-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Scheduler shared by every FileIOService, so GUI and service saves coalesce together
+    public static PersistenceScheduler getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Marks a file dirty. If a save for the same file is already pending it is
+     * replaced by this one. Files with a lower order are written first.
+     */
+    public synchronized void markDirty(String filename, int order, Runnable saveTask) {
+        pending.put(filename, new PendingSave(order, saveTask));
+        requested++;
+        if (scheduledFlush == null) {
+            scheduledFlush = executor.schedule((Runnable) this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized boolean isDirty(String filename) {
+        return pending.containsKey(filename);
+    }
+
+    // Writes every pending file now, on the calling thread
+    public void flush() {
+        synchronized (writeLock) {
+            List<PendingSave> saves;
+            synchronized (this) {
+                saves = new ArrayList<>(pending.values());
+                pending.clear();
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+            }
+            runInOrder(saves);
+        }
+    }
+
+    // Writes one pending file now, after the pending files ordered before it (no-op if it is clean)
+    public void flush(String filename) {
+        synchronized (writeLock) {
+            List<PendingSave> saves = new ArrayList<>();
+            synchronized (this) {
+                PendingSave save = pending.get(filename);
+                if (save == null) return;
+                pending.values().removeIf(s -> {
+                    if (s.order > save.order) return false;
+                    saves.add(s);
+                    return true;
+                });
+            }
+            runInOrder(saves);
+        }
+    }
+
+    // Flushes and stops the background thread
+    public void shutdown() {
+        flush();
+        executor.shutdown();
+    }
+
+    // Save requests vs actual file writes, for checking how much is being coalesced
+    public synchronized String getStats() {
+        return requested + " save requests, " + written + " file writes";
+    }
+
+    private void runInOrder(List<PendingSave> saves) {
+        saves.sort(Comparator.comparingInt(s -> s.order));
+        for (PendingSave save : saves) {
+            runSafely(save.task);
+        }
+    }
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+            synchronized (this) {
+                written++;
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Error in background save: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package service_implementation;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * SnapshotFile - crash-safe writing of the .txt data files.
+ *
+ * A full save goes to "file.tmp", gets a checksum trailer, is fsync'd, and then
+ * replaces the file with an atomic rename. The generation it replaces is kept as
+ * "file.bak" (a hard link where the file system allows it, otherwise a copy). A crash
+ * at any point leaves either the old or the new file, never half of one.
+ *
+ * The trailer is one fixed-width line at the end of the file:
+ *   #checksum:<sum of the CRC32 of every row, 16 hex>:<row count, 10 digits>
+ * Because it is a sum of per-row values, single rows can be appended or rewritten in
+ * place (books.txt slots) by adjusting the sum instead of re-reading the file, and
+ * verification can check ranges of a large file in parallel. Loaders skip '#' lines.
+ *
+ * In-place writes (rows and the new trailer) are logged to "file.patch" and fsync'd
+ * before the file is touched, and the log is deleted once they are on disk. A crash
+ * in between leaves a complete log that recover() applies again; a log torn while it
+ * was being written never reached the file and is dropped. So the .bak (the last full
+ * save) is only needed when the file is damaged some other way.
+ *
+ * recover() is run at startup: it redoes pending patch logs, verifies the files in
+ * parallel and puts back the .bak of any file that fails its checksum. Files without
+ * a trailer (written before this format) are accepted as they are.
+ */
+public class SnapshotFile {
+
+    public enum Status { OK, NO_CHECKSUM, MISSING, CORRUPT, RESTORED }
+
+    private static final String TRAILER_PREFIX = "#checksum:";
+    static final int TRAILER_LENGTH = trailer(0, 0).length;
+    private static final long PARALLEL_THRESHOLD = 4L * 1024 * 1024; // 4 MB
+    private static final long MAX_WINDOW = 1L << 30;                 // 1 GB mapped at a time
+
+    private SnapshotFile() {
+    }
+
+    public static Writer create(String filename) throws IOException {
+        return new Writer(filename);
+    }
+
+    /**
+     * Full-file writer. Rows must end with '\n'. Nothing is visible under the real
+     * name until commit(); closing without commit() throws the temp file away.
+     */
+    public static class Writer implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final FileOutputStream file;
+        private final OutputStream out;
+        private final CRC32 crc = new CRC32();
+        private long sum;
+        private int rows;
+        private boolean done;
+
+        private Writer(String filename) throws IOException {
+            this.target = Paths.get(filename);
+            this.temp = Paths.get(filename + ".tmp");
+            this.file = new FileOutputStream(temp.toFile(), false);
+            this.out = new BufferedOutputStream(file);
+        }
+
+        public void writeRow(byte[] row) throws IOException {
+            out.write(row);
+            crc.reset();
+            crc.update(row);
+            sum += crc.getValue();
+            rows++;
+        }
+
+        public void writeLine(String line) throws IOException {
+            writeRow((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        public void commit() throws IOException {
+            out.write(trailer(sum, rows));
+            out.flush();
+            file.getChannel().force(true);
+            out.close();
+            Files.deleteIfExists(Paths.get(target + ".patch")); // a full save supersedes a pending patch
+            keepPreviousGeneration(target);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory(target);
+            done = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (done) return;
+            done = true;
+            out.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // ========== SINGLE-ROW UPDATES ==========
+
+    /**
+     * Appends one row, keeping the trailer last. Returns the offset the row was
+     * written at. Files without a trailer are appended to as before.
+     */
+    public static long append(String filename, byte[] row) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long[] trailer = readTrailer(channel);
+            Patch patch = new Patch();
+            if (trailer == null && size > 0) {
+                patch.add(size, row);
+                patch.apply(filename, channel);
+                return size;
+            }
+            long offset = size == 0 ? 0 : size - TRAILER_LENGTH;
+            long sum = size == 0 ? 0 : trailer[0];
+            int rows = size == 0 ? 0 : (int) trailer[1];
+            patch.add(offset, row);
+            patch.add(offset + row.length, trailer(sum + crc(row), rows + 1));
+            patch.apply(filename, channel);
+            return offset;
+        }
+    }
+
+    /**
+     * Overwrites rows in place (each new row has the same length as the one it
+     * replaces) and adjusts the trailer. The writes go through the patch log, so a
+     * crash in the middle is redone by recover() instead of losing the update.
+     */
+    public static void overwriteRows(String filename, List<long[]> positions, List<byte[]> rows) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long[] trailer = readTrailer(channel);
+            long sum = trailer == null ? 0 : trailer[0];
+            Patch patch = new Patch();
+            for (int i = 0; i < rows.size(); i++) {
+                byte[] row = rows.get(i);
+                long pos = positions.get(i)[0];
+                if (trailer != null) {
+                    ByteBuffer old = ByteBuffer.allocate(row.length);
+                    while (old.hasRemaining() && channel.read(old, pos + old.position()) > 0) {
+                        // keep reading
+                    }
+                    old.flip();
+                    sum += crc(row) - crc(old);
+                }
+                patch.add(pos, row);
+            }
+            if (trailer != null) {
+                patch.add(channel.size() - TRAILER_LENGTH, trailer(sum, (int) trailer[1]));
+            }
+            patch.apply(filename, channel);
+        }
+    }
+
+    /**
+     * A set of positioned writes, logged before they are applied.
+     * Log format: (long position, int length, bytes)* then the CRC32 of all of that.
+     */
+    private static class Patch {
+        private final List<Long> positions = new ArrayList<>();
+        private final List<byte[]> writes = new ArrayList<>();
+
+        void add(long position, byte[] bytes) {
+            positions.add(position);
+            writes.add(bytes);
+        }
+
+        void apply(String filename, FileChannel channel) throws IOException {
+            Path log = Paths.get(filename + ".patch");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (int i = 0; i < writes.size(); i++) {
+                out.writeLong(positions.get(i));
+                out.writeInt(writes.get(i).length);
+                out.write(writes.get(i));
+            }
+            out.writeLong(crc(bytes.toByteArray()));
+            try (FileChannel logChannel = FileChannel.open(log, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(logChannel, bytes.toByteArray(), 0);
+                logChannel.force(false); // the log must be durable before the file changes
+            }
+            for (int i = 0; i < writes.size(); i++) {
+                writeFully(channel, writes.get(i), positions.get(i));
+            }
+            channel.force(false);
+            Files.deleteIfExists(log);
+        }
+    }
+
+    /**
+     * Applies a patch log left by a crash. Returns true if one was redone; a log whose
+     * CRC does not match was torn before any of its writes reached the file and is
+     * only deleted.
+     */
+    static boolean redoPatch(String filename) throws IOException {
+        Path log = Paths.get(filename + ".patch");
+        if (!Files.exists(log)) return false;
+        byte[] data = Files.readAllBytes(log);
+        boolean complete = false;
+        if (data.length >= 8) {
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            long expected = buf.getLong(data.length - 8);
+            complete = expected == crc(ByteBuffer.wrap(data, 0, data.length - 8));
+        }
+        if (complete) {
+            try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                ByteBuffer buf = ByteBuffer.wrap(data, 0, data.length - 8);
+                while (buf.hasRemaining()) {
+                    long position = buf.getLong();
+                    byte[] bytes = new byte[buf.getInt()];
+                    buf.get(bytes);
+                    writeFully(channel, bytes, position);
+                }
+                channel.force(false);
+            }
+        }
+        Files.delete(log);
+        return complete;
+    }
+
+    // ========== VERIFICATION / RECOVERY ==========
+
+    /**
+     * Verifies the files in parallel, after redoing any interrupted in-place update. A
+     * file that fails its checksum is replaced by its .bak when that one is intact.
+     * Leftover .tmp files from an interrupted save are removed.
+     */
+    public static Map<String, Status> recover(String... filenames) {
+        List<CompletableFuture<Status>> futures = new ArrayList<>();
+        for (String filename : filenames) {
+            futures.add(CompletableFuture.supplyAsync(() -> verifyOrRestore(filename)));
+        }
+        Map<String, Status> result = new LinkedHashMap<>();
+        for (int i = 0; i < filenames.length; i++) {
+            result.put(filenames[i], futures.get(i).join());
+        }
+        return result;
+    }
+
+    private static Status verifyOrRestore(String filename) {
+        try {
+            Files.deleteIfExists(Paths.get(filename + ".tmp"));
+        } catch (IOException e) {
+            System.out.println("Error removing " + filename + ".tmp: " + e.getMessage());
+        }
+        try {
+            if (redoPatch(filename)) System.out.println("[SnapshotFile] " + filename + ": redid interrupted row update");
+        } catch (IOException e) {
+            System.out.println("Error redoing " + filename + ".patch: " + e.getMessage());
+        }
+        Status status = verify(filename);
+        if (status != Status.CORRUPT) return status;
+
+        String backup = filename + ".bak";
+        Status backupStatus = verify(backup);
+        if (backupStatus != Status.OK && backupStatus != Status.NO_CHECKSUM) {
+            System.out.println("[SnapshotFile] " + filename + " failed its checksum and has no usable backup");
+            return Status.CORRUPT;
+        }
+        try {
+            Files.copy(Paths.get(backup), Paths.get(filename), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("Error restoring " + filename + ": " + e.getMessage());
+            return Status.CORRUPT;
+        }
+        System.out.println("[SnapshotFile] " + filename + " failed its checksum, restored previous generation");
+        return Status.RESTORED;
+    }
+
+    /**
+     * Checks the trailer against the rows; large files are checked in parallel ranges.
+     * A file is mapped in windows of at most MAX_WINDOW bytes, each ending right after
+     * a newline, so files past the 2 GB limit of one mapping are checked as well.
+     */
+    public static Status verify(String filename) {
+        File file = new File(filename);
+        if (!file.exists()) return Status.MISSING;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] trailer = readTrailer(channel);
+            if (trailer == null) return Status.NO_CHECKSUM;
+            long dataLength = channel.size() - TRAILER_LENGTH;
+            long[] total = new long[2];
+            long start = 0;
+            while (start < dataLength) {
+                long length = Math.min(MAX_WINDOW, dataLength - start);
+                MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                int end = (int) length;
+                if (start + length < dataLength) {
+                    while (end > 0 && data.get(end - 1) != '\n') end--; // the next window takes the partial row
+                    if (end == 0) return Status.CORRUPT; // no data row is anywhere near MAX_WINDOW long
+                }
+                long[] part = end < PARALLEL_THRESHOLD ? rowSums(data, 0, end) : parallelRowSums(data.slice(0, end));
+                total[0] += part[0];
+                total[1] += part[1];
+                start += end;
+            }
+            return total[0] == trailer[0] && total[1] == trailer[1] ? Status.OK : Status.CORRUPT;
+        } catch (IOException e) {
+            System.out.println("Error verifying " + filename + ": " + e.getMessage());
+            return Status.CORRUPT;
+        }
+    }
+
+    private static long[] parallelRowSums(ByteBuffer data) {
+        int size = data.capacity();
+        int parts = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int[] bounds = new int[parts + 1];
+        bounds[parts] = size;
+        for (int i = 1; i < parts; i++) {
+            // Each range starts right after a newline
+            int pos = Math.max((int) ((long) size * i / parts), bounds[i - 1]);
+            while (pos < size && data.get(pos - 1) != '\n') pos++;
+            bounds[i] = pos;
+        }
+        List<CompletableFuture<long[]>> futures = new ArrayList<>();
+        for (int i = 0; i < parts; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            futures.add(CompletableFuture.supplyAsync(() -> rowSums(data, from, to)));
+        }
+        long[] total = new long[2];
+        for (CompletableFuture<long[]> f : futures) {
+            long[] part = f.join();
+            total[0] += part[0];
+            total[1] += part[1];
+        }
+        return total;
+    }
+
+    // {sum of row CRCs, row count} for the rows in [from, to)
+    private static long[] rowSums(ByteBuffer data, int from, int to) {
+        CRC32 crc = new CRC32();
+        long sum = 0;
+        long rows = 0;
+        int start = from;
+        for (int pos = from; pos < to; pos++) {
+            if (data.get(pos) != '\n') continue;
+            crc.reset();
+            crc.update(data.slice(start, pos + 1 - start));
+            sum += crc.getValue();
+            rows++;
+            start = pos + 1;
+        }
+        if (start < to) { // last row without a newline
+            crc.reset();
+            crc.update(data.slice(start, to - start));
+            sum += crc.getValue();
+            rows++;
+        }
+        return new long[]{sum, rows};
+    }
+
+    // ========== HELPERS ==========
+
+    private static byte[] trailer(long sum, int rows) {
+        return String.format("%s%016x:%010d\n", TRAILER_PREFIX, sum, rows).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // {sum, rows} from the trailer, or null if the file does not end with one
+    private static long[] readTrailer(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < TRAILER_LENGTH) return null;
+        ByteBuffer buf = ByteBuffer.allocate(TRAILER_LENGTH);
+        while (buf.hasRemaining() && channel.read(buf, size - TRAILER_LENGTH + buf.position()) > 0) {
+            // keep reading
+        }
+        String text = new String(buf.array(), StandardCharsets.US_ASCII);
+        if (!text.startsWith(TRAILER_PREFIX) || text.charAt(TRAILER_LENGTH - 1) != '\n') return null;
+        try {
+            long sum = Long.parseUnsignedLong(text.substring(TRAILER_PREFIX.length(), TRAILER_PREFIX.length() + 16), 16);
+            long rows = Long.parseLong(text.substring(TRAILER_PREFIX.length() + 17, TRAILER_LENGTH - 1));
+            return new long[]{sum, rows};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long crc(byte[] row) {
+        CRC32 crc = new CRC32();
+        crc.update(row);
+        return crc.getValue();
+    }
+
+    private static long crc(ByteBuffer row) {
+        CRC32 crc = new CRC32();
+        crc.update(row);
+        return crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes, long pos) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        while (buf.hasRemaining()) {
+            pos += channel.write(buf, pos);
+        }
+    }
+
+    private static void keepPreviousGeneration(Path target) throws IOException {
+        if (!Files.exists(target)) return;
+        Path backup = Paths.get(target + ".bak");
+        Files.deleteIfExists(backup);
+        try {
+            Files.createLink(backup, target); // the rename gives target a new inode; the link keeps the old one
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(target, backup, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Makes the rename itself durable; not supported on every platform
+    private static void syncDirectory(Path target) {
+        Path dir = target.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+}
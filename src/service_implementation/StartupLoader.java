@@ -0,0 +1,254 @@
+package service_implementation;
+
+import model.Book;
+import model.BorrowRecord;
+import model.Member;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * StartupLoader - loads books, members and borrow history in parallel and builds
+ * the three services once.
+ *
+ * The three files are parsed at the same time. A file bigger than SPLIT_THRESHOLD is
+ * additionally memory-mapped and cut into byte ranges (one per core, each range
+ * starting right after a newline) that are parsed in parallel and joined in order.
+ * BorrowService gets the parsed history directly instead of reading the file again.
+ *
+ * Before parsing, SnapshotFile.recover() finishes any interrupted in-place row update,
+ * verifies the files and restores a damaged one from its previous generation.
+ *
+ * With a snapshot file (BinarySnapshot, written by BorrowService.checkpoint()) that is
+ * at least as new as all three text files, the snapshot is mapped and decoded instead
+ * and the text files are not parsed. A text file changed after the last checkpoint, or
+ * a snapshot that cannot be read, falls back to the text files.
+ *
+ * Per-phase timings are printed and kept in getTimings().
+ */
+public class StartupLoader {
+
+    private static final long SPLIT_THRESHOLD = 4L * 1024 * 1024; // 4 MB
+
+    private final FileIOService fileIO;
+    private final Map<String, Long> timings = new LinkedHashMap<>(); // phase -> ms
+
+    private List<Book> books;
+    private List<Member> members;
+    private BookService bookService;
+    private MemberService memberService;
+    private BorrowService borrowService;
+
+    public StartupLoader(FileIOService fileIO) {
+        this.fileIO = fileIO;
+    }
+
+    public void load(String booksFile, String membersFile, String recordsFile) {
+        load(booksFile, membersFile, recordsFile, null);
+    }
+
+    // snapshotFile: BinarySnapshot to use when it is current, or null to always parse the text files
+    public void load(String booksFile, String membersFile, String recordsFile, String snapshotFile) {
+        long start = System.nanoTime();
+
+        // Check the checksums first (in parallel); a damaged file is replaced by its .bak
+        timed("verify", () -> SnapshotFile.recover(booksFile, membersFile, recordsFile));
+
+        List<BorrowRecord> fromSnapshot = snapshotFile == null ? null
+                : loadSnapshot(snapshotFile, booksFile, membersFile, recordsFile);
+        List<BorrowRecord> records = fromSnapshot != null ? fromSnapshot
+                : parseTextFiles(booksFile, membersFile, recordsFile);
+
+        // The services share the same Book/Member objects, so build each index once
+        timed("build services", () -> {
+            bookService = new BookService(books);
+            memberService = new MemberService(members, books);
+            borrowService = new BorrowService(members, books, records);
+            return null;
+        });
+
+        record("total", start);
+        System.out.println("[Startup] Loaded " + books.size() + " books, " + members.size() + " members, "
+                + records.size() + " borrow records - " + timings);
+        if (BookService.isOffHeap()) {
+            System.out.println("[Startup] Off-heap catalog: " + BookService.offHeapCatalog().getRowCount() + " rows, "
+                    + (BookService.offHeapCatalog().getOffHeapBytes() >> 20) + " MB direct memory");
+        }
+    }
+
+    public List<Book> getBooks() { return books; }
+    public List<Member> getMembers() { return members; }
+    public BookService getBookService() { return bookService; }
+    public MemberService getMemberService() { return memberService; }
+    public BorrowService getBorrowService() { return borrowService; }
+
+    public synchronized Map<String, Long> getTimings() {
+        return new LinkedHashMap<>(timings);
+    }
+
+    // Parses the three files at the same time; books and members go into the fields
+    private List<BorrowRecord> parseTextFiles(String booksFile, String membersFile, String recordsFile) {
+        CompletableFuture<List<Book>> booksFuture =
+                CompletableFuture.supplyAsync(() -> timed("parse " + booksFile, () -> parseFile(booksFile, fileIO::parseBook)));
+        CompletableFuture<List<Member>> membersFuture =
+                CompletableFuture.supplyAsync(() -> timed("parse " + membersFile, () -> parseFile(membersFile, fileIO::parseMember)));
+        CompletableFuture<List<BorrowRecord>> recordsFuture =
+                CompletableFuture.supplyAsync(() -> timed("parse " + recordsFile, () -> parseFile(recordsFile, fileIO::parseBorrowRecord)));
+
+        books = booksFuture.join();
+        members = membersFuture.join();
+        return recordsFuture.join();
+    }
+
+    // ========== SNAPSHOT ==========
+
+    /**
+     * Decodes books and members into the fields and returns the borrow records, or
+     * returns null (fields untouched) when the snapshot is missing, older than one of
+     * the text files, or unreadable.
+     */
+    private List<BorrowRecord> loadSnapshot(String snapshotFile, String... textFiles) {
+        fileIO.flushPendingSaves();
+        File snapshot = new File(snapshotFile);
+        if (!snapshot.exists()) return null;
+        for (String textFile : textFiles) {
+            if (new File(textFile).lastModified() > snapshot.lastModified()) {
+                System.out.println("[Startup] " + textFile + " changed after the last snapshot; parsing the text files");
+                return null;
+            }
+        }
+        BinarySnapshot mapped = timed("map " + snapshotFile, () -> fileIO.openSnapshot(snapshotFile));
+        if (mapped == null) return null;
+        try {
+            List<BorrowRecord> records = timed("decode " + snapshotFile, () -> {
+                List<Book> b = mapped.loadBooks();
+                List<Member> m = mapped.loadMembers();
+                List<BorrowRecord> r = mapped.loadBorrowRecords();
+                books = b;
+                members = m;
+                return r;
+            });
+            System.out.println("[Startup] Loaded from snapshot " + snapshotFile);
+            return records;
+        } catch (RuntimeException e) {
+            System.out.println("Error reading snapshot " + snapshotFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ========== PARSING ==========
+
+    private <T> List<T> parseFile(String filename, Function<String, T> parser) {
+        fileIO.getScheduler().flush(filename);
+        File file = new File(filename);
+        if (!file.exists()) return new ArrayList<>();
+        if (file.length() < SPLIT_THRESHOLD || file.length() > Integer.MAX_VALUE) {
+            return parseSequential(file, parser);
+        }
+        return parseRanges(file, parser);
+    }
+
+    private <T> List<T> parseSequential(File file, Function<String, T> parser) {
+        List<T> result = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                T item = parser.apply(line);
+                if (item != null) result.add(item);
+            }
+        } catch (IOException e) {
+            System.out.println("Error loading " + file.getName() + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    private <T> List<T> parseRanges(File file, Function<String, T> parser) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            System.out.println("Error loading " + file.getName() + ": " + e.getMessage());
+            return new ArrayList<>();
+        }
+
+        int size = buffer.capacity();
+        int parts = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int[] bounds = new int[parts + 1];
+        bounds[parts] = size;
+        for (int i = 1; i < parts; i++) {
+            // Move each split point to just after the next newline
+            int pos = Math.max((int) ((long) size * i / parts), bounds[i - 1]);
+            while (pos < size && buffer.get(pos - 1) != '\n') pos++;
+            bounds[i] = pos;
+        }
+
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+        for (int i = 0; i < parts; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            futures.add(CompletableFuture.supplyAsync(() -> parseRange(buffer, from, to, parser)));
+        }
+
+        List<T> result = new ArrayList<>();
+        for (CompletableFuture<List<T>> f : futures) {
+            result.addAll(f.join());
+        }
+        return result;
+    }
+
+    private static <T> List<T> parseRange(MappedByteBuffer buffer, int from, int to, Function<String, T> parser) {
+        List<T> result = new ArrayList<>();
+        byte[] line = new byte[256];
+        int length = 0;
+        for (int pos = from; pos < to; pos++) {
+            byte b = buffer.get(pos);
+            if (b == '\n') {
+                addLine(result, line, length, parser);
+                length = 0;
+            } else {
+                if (length == line.length) {
+                    byte[] bigger = new byte[line.length * 2];
+                    System.arraycopy(line, 0, bigger, 0, length);
+                    line = bigger;
+                }
+                line[length++] = b;
+            }
+        }
+        addLine(result, line, length, parser);
+        return result;
+    }
+
+    private static <T> void addLine(List<T> result, byte[] line, int length, Function<String, T> parser) {
+        if (length > 0 && line[length - 1] == '\r') length--;
+        if (length == 0) return;
+        T item = parser.apply(new String(line, 0, length, StandardCharsets.UTF_8));
+        if (item != null) result.add(item);
+    }
+
+    // ========== TIMINGS ==========
+
+    private interface Phase<T> {
+        T run();
+    }
+
+    private <T> T timed(String phase, Phase<T> work) {
+        long start = System.nanoTime();
+        T result = work.run();
+        record(phase, start);
+        return result;
+    }
+
+    private synchronized void record(String phase, long startNanos) {
+        timings.put(phase, (System.nanoTime() - startNanos) / 1_000_000);
+    }
+}
@@ -22,6 +22,9 @@ public interface BorrowServiceInterface {
     // Get borrow records for a specific book
     List<BorrowRecord> getBorrowRecordsByBook(String bookId);
 
+    // Get borrow records with a borrow date between from and to (inclusive)
+    List<BorrowRecord> getBorrowRecordsBetween(LocalDate from, LocalDate to);
+
     // Check if a book is currently borrowed by a member
     boolean isBookBorrowedByMember(String bookId, String memberId);
 
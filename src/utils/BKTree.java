@@ -0,0 +1,142 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BKTree - Burkhard-Keller tree of distinct words under Levenshtein distance.
+ *
+ * Every child hangs off its parent at the edit distance between the two words. By
+ * the triangle inequality, a word within maxDistance of the query can only sit under
+ * edges labelled d - maxDistance .. d + maxDistance (d = distance from query to the
+ * node), so search() skips every other subtree instead of comparing the query with
+ * the whole vocabulary.
+ *
+ * Words are only ever added: a BK-tree cannot drop a node without rebuilding the
+ * subtree below it. Callers that stop using a word keep it in the tree and filter
+ * the results (or start a new tree).
+ *
+ * Not thread-safe: callers that share a tree between threads must lock around it.
+ */
+public class BKTree {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final int[] NO_DISTANCES = new int[0];
+
+    private static final class Node {
+        final String word;
+        int[] distances = NO_DISTANCES; // edge label of each child, ascending
+        Node[] children = NO_CHILDREN;
+
+        Node(String word) {
+            this.word = word;
+        }
+
+        Node child(int distance) {
+            int at = Arrays.binarySearch(distances, distance);
+            return at < 0 ? null : children[at];
+        }
+
+        void addChild(int distance, Node child) {
+            int at = -Arrays.binarySearch(distances, distance) - 1;
+            distances = Arrays.copyOf(distances, distances.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(distances, at, distances, at + 1, distances.length - at - 1);
+            System.arraycopy(children, at, children, at + 1, children.length - at - 1);
+            distances[at] = distance;
+            children[at] = child;
+        }
+    }
+
+    // One search hit
+    public static final class Match {
+        public final String word;
+        public final int distance;
+
+        Match(String word, int distance) {
+            this.word = word;
+            this.distance = distance;
+        }
+    }
+
+    private final HashMap_Imp<String, Node> nodes = new HashMap_Imp<>(); // word -> its node
+    private Node root;
+
+    // Number of distinct words
+    public int size() {
+        return nodes.size();
+    }
+
+    public boolean contains(String word) {
+        return nodes.containsKey(word);
+    }
+
+    // Adds word unless it is already in the tree (a hash lookup when it is)
+    public void add(String word) {
+        if (nodes.containsKey(word)) return;
+        if (root == null) {
+            root = new Node(word);
+            nodes.put(word, root);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int d = distance(word, node.word);
+            Node child = node.child(d);
+            if (child == null) {
+                child = new Node(word);
+                node.addChild(d, child);
+                nodes.put(word, child);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    // Words within maxDistance edits of query, in no particular order
+    public List<Match> search(String query, int maxDistance) {
+        List<Match> result = new ArrayList<>();
+        if (root == null) return result;
+        List<Node> pending = new ArrayList<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            int d = distance(query, node.word);
+            if (d <= maxDistance) result.add(new Match(node.word, d));
+            int from = Arrays.binarySearch(node.distances, d - maxDistance);
+            if (from < 0) from = -from - 1;
+            for (int i = from; i < node.distances.length && node.distances[i] <= d + maxDistance; i++) {
+                pending.add(node.children[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Levenshtein distance (insertions, deletions and substitutions each cost 1),
+     * two rows of the usual dynamic-programming table.
+     */
+    public static int distance(String a, String b) {
+        if (a.length() < b.length()) {
+            String t = a;
+            a = b;
+            b = t;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] t = previous;
+            previous = current;
+            current = t;
+        }
+        return previous[b.length()];
+    }
+}
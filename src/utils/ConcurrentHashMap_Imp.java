@@ -0,0 +1,267 @@
+package utils;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * ConcurrentHashMap_Imp - thread-safe HashMap_Int for maps shared by several
+ * terminals and the background flusher.
+ *
+ * Buckets are chains of nodes whose next/value fields are volatile, so get() and
+ * containsKey() never lock. Writers lock one stripe (bucket index mod STRIPES), so
+ * writes to different stripes run in parallel. Growing the table takes every stripe
+ * lock and copies the nodes into a new table; readers keep using the old table until
+ * the new one is published, and always see a consistent chain.
+ *
+ * putIfAbsent / compute / computeIfAbsent run under the key's stripe lock, which makes
+ * check-then-act on one key atomic without a global lock. Keep the functions short:
+ * they block other writers of the same stripe.
+ *
+ * Null keys and values cannot be stored (a null from get() always means "absent");
+ * looking up a null key just finds nothing.
+ *
+ * keys() / values() are weakly consistent: they never throw and may or may not see
+ * changes made while iterating.
+ */
+public class ConcurrentHashMap_Imp<K, V> implements HashMap_Int<K, V> {
+
+    private static final int STRIPES = 16;
+    private static final double LOAD_FACTOR = 0.75;
+
+    private static final class Node<K, V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    private volatile AtomicReferenceArray<Node<K, V>> table;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final AtomicInteger size = new AtomicInteger();
+
+    public ConcurrentHashMap_Imp() {
+        this(16);
+    }
+
+    public ConcurrentHashMap_Imp(int expectedSize) {
+        int capacity = STRIPES;
+        while (capacity * LOAD_FACTOR < expectedSize) capacity <<= 1;
+        table = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < STRIPES; i++) locks[i] = new ReentrantLock();
+    }
+
+    private static int spread(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static void checkNotNull(Object o) {
+        if (o == null) throw new NullPointerException("ConcurrentHashMap_Imp does not allow null keys or values");
+    }
+
+    // ========== LOCK-FREE READS ==========
+
+    @Override
+    public V get(K key) {
+        if (key == null) return null;
+        Node<K, V> node = findNode(table, spread(key), key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    private static <K, V> Node<K, V> findNode(AtomicReferenceArray<Node<K, V>> tab, int hash, Object key) {
+        for (Node<K, V> n = tab.get(hash & (tab.length() - 1)); n != null; n = n.next) {
+            if (n.hash == hash && (n.key == key || n.key.equals(key))) return n;
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    // ========== STRIPED WRITES ==========
+
+    @Override
+    public void put(K key, V value) {
+        checkNotNull(value);
+        update(key, (k, old) -> value);
+    }
+
+    // Stores value only if key is absent; returns the existing value, or null if it was stored
+    public V putIfAbsent(K key, V value) {
+        checkNotNull(value);
+        Object[] previous = new Object[1];
+        update(key, (k, old) -> {
+            previous[0] = old;
+            return old != null ? old : value;
+        });
+        @SuppressWarnings("unchecked")
+        V result = (V) previous[0];
+        return result;
+    }
+
+    /**
+     * Atomically replaces the value of key with fn(key, oldValue) (oldValue is null if
+     * absent). A null result removes the key. Returns the new value.
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> fn) {
+        return update(key, fn);
+    }
+
+    // Returns the value for key, creating it with fn once if absent
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> fn) {
+        V existing = get(key);
+        if (existing != null) return existing; // common case: no lock
+        return update(key, (k, old) -> old != null ? old : fn.apply(k));
+    }
+
+    @Override
+    public V remove(K key) {
+        if (key == null) return null;
+        Object[] previous = new Object[1];
+        update(key, (k, old) -> {
+            previous[0] = old;
+            return null;
+        });
+        @SuppressWarnings("unchecked")
+        V result = (V) previous[0];
+        return result;
+    }
+
+    /**
+     * Runs fn on the current value of key under the key's stripe lock and stores the
+     * result (null removes). Every write goes through here.
+     */
+    private V update(K key, BiFunction<? super K, ? super V, ? extends V> fn) {
+        checkNotNull(key);
+        int hash = spread(key);
+        boolean added;
+        V result;
+        while (true) {
+            AtomicReferenceArray<Node<K, V>> tab = table;
+            ReentrantLock lock = locks[hash & (STRIPES - 1)];
+            lock.lock();
+            try {
+                if (tab != table) continue; // resized while we waited; retry on the new table
+                int index = hash & (tab.length() - 1);
+                Node<K, V> head = tab.get(index);
+                Node<K, V> prev = null;
+                Node<K, V> node = head;
+                while (node != null && !(node.hash == hash && (node.key == key || node.key.equals(key)))) {
+                    prev = node;
+                    node = node.next;
+                }
+                V old = node == null ? null : node.value;
+                result = fn.apply(key, old);
+                added = false;
+                if (node != null && result != null) {
+                    node.value = result;
+                } else if (node != null) {
+                    // Unlink; readers already on the node still reach the rest of the chain
+                    if (prev == null) tab.set(index, node.next);
+                    else prev.next = node.next;
+                    size.decrementAndGet();
+                } else if (result != null) {
+                    tab.set(index, new Node<>(hash, key, result, head));
+                    size.incrementAndGet();
+                    added = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+            break;
+        }
+        if (added && size.get() > table.length() * LOAD_FACTOR) {
+            resize();
+        }
+        return result;
+    }
+
+    // Doubles the table under every stripe lock; the old chains are left intact for readers
+    private void resize() {
+        for (ReentrantLock lock : locks) lock.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> old = table;
+            if (size.get() <= old.length() * LOAD_FACTOR) return; // another thread already grew it
+            AtomicReferenceArray<Node<K, V>> grown = new AtomicReferenceArray<>(old.length() * 2);
+            int mask = grown.length() - 1;
+            for (int i = 0; i < old.length(); i++) {
+                for (Node<K, V> n = old.get(i); n != null; n = n.next) {
+                    int index = n.hash & mask;
+                    grown.set(index, new Node<>(n.hash, n.key, n.value, grown.get(index)));
+                }
+            }
+            table = grown;
+        } finally {
+            for (ReentrantLock lock : locks) lock.unlock();
+        }
+    }
+
+    // ========== ITERATION ==========
+
+    @Override
+    public Iterable<K> keys() {
+        return () -> new NodeIterator<K>(true);
+    }
+
+    @Override
+    public Iterable<V> values() {
+        return () -> new NodeIterator<V>(false);
+    }
+
+    private class NodeIterator<T> implements Iterator<T> {
+        private final boolean returnKeys;
+        private final AtomicReferenceArray<Node<K, V>> tab = table;
+        private int index = -1;
+        private Node<K, V> next;
+
+        NodeIterator(boolean returnKeys) {
+            this.returnKeys = returnKeys;
+            advance();
+        }
+
+        private void advance() {
+            if (next != null) next = next.next;
+            while (next == null && ++index < tab.length()) {
+                next = tab.get(index);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (next == null) throw new NoSuchElementException();
+            Object result = returnKeys ? next.key : next.value;
+            advance();
+            return (T) result;
+        }
+    }
+}
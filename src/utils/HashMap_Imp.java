@@ -1,104 +1,132 @@
 package utils;
 
-import java.util.LinkedList;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
+/**
+ * HashMap_Imp - open-addressing hash map.
+ *
+ * Keys, values and spread hash codes live in parallel arrays (no Entry objects, no
+ * bucket lists). Hash codes are spread before masking so ids that differ only in
+ * their last characters still land far apart, and collisions are resolved by linear
+ * probing. A probe compares the stored hash before calling equals(), so walking past
+ * other keys does not touch the key objects.
+ * remove() leaves a tombstone so later probes keep walking; tombstones are dropped
+ * at the next rehash. A rehash copies every live slot straight into the new arrays
+ * in one pass (keys are already unique, so no duplicate check is needed).
+ *
+ * keys() / values() iterate in slot order and are fail-fast.
+ */
 public class HashMap_Imp<K, V> implements HashMap_Int<K, V> {
-    private static class Entry<K, V> {
-        K key;
-        V value;
-        Entry(K key, V value) {
-            this.key = key;
-            this.value = value;
-        }
-    }
 
-    private LinkedList<Entry<K, V>>[] buckets;
-    private int capacity = 16;
+    private static final Object NULL_KEY = new Object();  // stands in for a null key
+    private static final Object TOMBSTONE = new Object(); // slot of a removed entry
+    private static final double LOAD_FACTOR = 0.5;        // live + tombstone slots, before rehash
+
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes;
+    private int mask;
     private int size = 0;
-    private static final double LOAD_FACTOR = 0.75;
+    private int used = 0;     // live entries + tombstones
+    private int modCount = 0;
 
-    @SuppressWarnings("unchecked")
     public HashMap_Imp() {
-        buckets = new LinkedList[capacity];
+        this(16);
+    }
+
+    public HashMap_Imp(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int spread(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static Object mask(Object key) {
+        return key == null ? NULL_KEY : key;
     }
 
-    private int getIndex(K key) {
-        if (key == null) return 0; // Handle null keys
-        return Math.abs(key.hashCode() % capacity);
+    // Slot holding key, or -1
+    private int find(Object key) {
+        int h = spread(key);
+        int i = h & mask;
+        Object k;
+        while ((k = keys[i]) != null) {
+            if (hashes[i] == h && k != TOMBSTONE && (k == key || k.equals(key))) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
     }
 
     @Override
     public void put(K key, V value) {
-        int index = getIndex(key);
-        if (buckets[index] == null) {
-            buckets[index] = new LinkedList<>();
-        }
-        
-        // Check if key already exists
-        for (Entry<K, V> entry : buckets[index]) {
-            if ((key == null && entry.key == null) || 
-                (key != null && key.equals(entry.key))) {
-                entry.value = value; // update existing
+        Object k = mask(key);
+        int h = spread(k);
+        int i = h & mask;
+        int firstTombstone = -1;
+        Object current;
+        while ((current = keys[i]) != null) {
+            if (current == TOMBSTONE) {
+                if (firstTombstone < 0) firstTombstone = i;
+            } else if (hashes[i] == h && (current == k || current.equals(k))) {
+                values[i] = value; // update existing
                 return;
             }
+            i = (i + 1) & mask;
         }
-        
-        // Add new entry
-        buckets[index].add(new Entry<>(key, value));
+
+        // Add new entry, reusing a tombstone on the probe path if there was one
+        if (firstTombstone >= 0) {
+            i = firstTombstone;
+        } else {
+            used++;
+        }
+        keys[i] = k;
+        values[i] = value;
+        hashes[i] = h;
         size++;
-        
-        // Resize if load factor exceeded
-        if (size > capacity * LOAD_FACTOR) {
-            resize();
+        modCount++;
+
+        if (used > keys.length * LOAD_FACTOR) {
+            rehash();
         }
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public V get(K key) {
-        int index = getIndex(key);
-        if (buckets[index] != null) {
-            for (Entry<K, V> entry : buckets[index]) {
-                if ((key == null && entry.key == null) || 
-                    (key != null && key.equals(entry.key))) {
-                    return entry.value;
-                }
-            }
-        }
-        return null;
+        int i = find(mask(key));
+        return i < 0 ? null : (V) values[i];
     }
 
     @Override
     public boolean containsKey(K key) {
-        int index = getIndex(key);
-        if (buckets[index] != null) {
-            for (Entry<K, V> entry : buckets[index]) {
-                if ((key == null && entry.key == null) || 
-                    (key != null && key.equals(entry.key))) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return find(mask(key)) >= 0;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public V remove(K key) {
-        int index = getIndex(key);
-        if (buckets[index] != null) {
-            Iterator<Entry<K, V>> iterator = buckets[index].iterator();
-            while (iterator.hasNext()) {
-                Entry<K, V> entry = iterator.next();
-                if ((key == null && entry.key == null) || 
-                    (key != null && key.equals(entry.key))) {
-                    V value = entry.value;
-                    iterator.remove(); // Safe removal during iteration
-                    size--;
-                    return value;
-                }
-            }
-        }
-        return null;
+        int i = find(mask(key));
+        if (i < 0) return null;
+        V value = (V) values[i];
+        keys[i] = TOMBSTONE;
+        values[i] = null;
+        size--;
+        modCount++;
+        return value;
     }
 
     @Override
@@ -111,20 +139,76 @@ public class HashMap_Imp<K, V> implements HashMap_Int<K, V> {
         return size == 0;
     }
 
-    @SuppressWarnings("unchecked")
-    private void resize() {
-        LinkedList<Entry<K, V>>[] oldBuckets = buckets;
-        capacity *= 2;
-        buckets = new LinkedList[capacity];
-        size = 0;
-        
-        // Rehash all existing entries
-        for (LinkedList<Entry<K, V>> bucket : oldBuckets) {
-            if (bucket != null) {
-                for (Entry<K, V> entry : bucket) {
-                    put(entry.key, entry.value);
-                }
+    /**
+     * Grows the table when it is mostly live entries; otherwise rebuilds it at the
+     * same size, which just clears out the tombstones.
+     */
+    private void rehash() {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        int capacity = size * 2 > oldKeys.length * LOAD_FACTOR ? oldKeys.length * 2 : oldKeys.length;
+        allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            Object k = oldKeys[j];
+            if (k == null || k == TOMBSTONE) continue;
+            int i = oldHashes[j] & mask;
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = k;
+            values[i] = oldValues[j];
+            hashes[i] = oldHashes[j];
+        }
+        used = size;
+    }
+
+    // ========== ITERATION ==========
+
+    @Override
+    public Iterable<K> keys() {
+        return () -> new SlotIterator<K>(true);
+    }
+
+    @Override
+    public Iterable<V> values() {
+        return () -> new SlotIterator<V>(false);
+    }
+
+    private class SlotIterator<T> implements Iterator<T> {
+        private final boolean returnKeys;
+        private final Object[] slotKeys = keys;
+        private final Object[] slotValues = values;
+        private final int expectedModCount = modCount;
+        private int next = -1;
+
+        SlotIterator(boolean returnKeys) {
+            this.returnKeys = returnKeys;
+            advance();
+        }
+
+        private void advance() {
+            do {
+                next++;
+            } while (next < slotKeys.length && (slotKeys[next] == null || slotKeys[next] == TOMBSTONE));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < slotKeys.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (next >= slotKeys.length) throw new NoSuchElementException();
+            Object result;
+            if (returnKeys) {
+                result = slotKeys[next] == NULL_KEY ? null : slotKeys[next];
+            } else {
+                result = slotValues[next];
             }
+            advance();
+            return (T) result;
         }
     }
 }
\ No newline at end of file
@@ -7,4 +7,6 @@ public interface HashMap_Int<K, V> {
     V remove(K key);                // delete a key
     int size();                     // how many key-value pairs
     boolean isEmpty();              // quick check
+    Iterable<K> keys();             // every key, in no particular order
+    Iterable<V> values();           // every value, in the same order as keys()
 }
\ No newline at end of file
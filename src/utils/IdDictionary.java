@@ -0,0 +1,75 @@
+package utils;
+
+/**
+ * IdDictionary - assigns each distinct String id a dense int key (0, 1, 2, ...).
+ *
+ * Ids such as "B003" or "M1759922135006" are turned into keys once, when a record is
+ * loaded or created; after that internal structures can be plain arrays and bitsets
+ * indexed by key instead of String-keyed hash maps. nameOf(key) gives the id back at
+ * the I/O and GUI edges, and canonical(id) returns the one shared String instance
+ * for an id, so repeated copies of it can be dropped.
+ *
+ * keyOf(null) is NO_KEY and nameOf(NO_KEY) is null, so nullable fields can be
+ * stored as keys too. Keys are never reused or removed. Thread-safe: lookups never lock, and a new id is
+ * assigned under its ConcurrentHashMap_Imp stripe lock, so two threads asking for
+ * the same new id get the same key.
+ */
+public class IdDictionary {
+
+    public static final int NO_KEY = -1;
+
+    private final ConcurrentHashMap_Imp<String, Integer> keys;
+    private volatile String[] names;
+    private int count; // guarded by this
+
+    public IdDictionary() {
+        this(64);
+    }
+
+    public IdDictionary(int expectedSize) {
+        keys = new ConcurrentHashMap_Imp<>(expectedSize);
+        names = new String[Math.max(expectedSize, 16)];
+    }
+
+    // Key for id, assigning the next free one if id is new
+    public int keyOf(String id) {
+        if (id == null) return NO_KEY;
+        Integer key = keys.computeIfAbsent(id, this::assign);
+        return key;
+    }
+
+    // Key for id, or NO_KEY if it was never assigned
+    public int find(String id) {
+        Integer key = id == null ? null : keys.get(id);
+        return key == null ? NO_KEY : key;
+    }
+
+    // The id that key stands for, or null if key was never assigned
+    public String nameOf(int key) {
+        String[] current = names;
+        return key >= 0 && key < current.length ? current[key] : null;
+    }
+
+    // The shared instance of id (assigns a key if id is new)
+    public String canonical(String id) {
+        return nameOf(keyOf(id));
+    }
+
+    // Number of keys handed out; every key is below this
+    public synchronized int size() {
+        return count;
+    }
+
+    // Called once per new id, under the stripe lock of that id
+    private synchronized Integer assign(String id) {
+        String[] current = names;
+        if (count == current.length) {
+            String[] bigger = new String[current.length * 2];
+            System.arraycopy(current, 0, bigger, 0, count);
+            current = bigger;
+        }
+        current[count] = id;
+        names = current; // volatile write publishes the name before the key is handed out
+        return count++;
+    }
+}
@@ -0,0 +1,247 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * IndexedMaxHeap - array-backed binary max-heap that also knows where each element is.
+ *
+ * A position map (element -> array slot) lets callers change an element's key in
+ * place and then call increaseKey / decreaseKey / update to move just that element,
+ * in O(log n), instead of rebuilding the heap. remove(element) is O(log n) too.
+ *
+ * Elements are looked up with equals/hashCode, so each element may be stored once.
+ * The comparator decides the order: the element it ranks highest is at the root.
+ *
+ * topN(n) returns the n largest elements in order in O(n log n), without touching
+ * the heap: it walks down from the root keeping a small frontier of candidate slots.
+ *
+ * Not thread-safe: callers that share a heap between threads must lock around it.
+ */
+public class IndexedMaxHeap<E> {
+
+    private final Comparator<? super E> comparator;
+    private final HashMap_Imp<E, Integer> positions;
+    private Object[] heap;
+    private int size;
+
+    public IndexedMaxHeap(Comparator<? super E> comparator) {
+        this(comparator, 16);
+    }
+
+    public IndexedMaxHeap(Comparator<? super E> comparator, int expectedSize) {
+        this.comparator = comparator;
+        this.positions = new HashMap_Imp<>(expectedSize);
+        this.heap = new Object[Math.max(expectedSize, 16)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(E element) {
+        return element != null && positions.containsKey(element);
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) positions.remove(element(i));
+        Arrays.fill(heap, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Replaces the contents with items in O(n) (bottom-up heapify). Duplicates after
+     * the first occurrence are ignored.
+     */
+    public void buildHeap(Collection<? extends E> items) {
+        clear();
+        if (items.size() > heap.length) heap = new Object[items.size()];
+        for (E item : items) {
+            if (item == null || positions.containsKey(item)) continue;
+            heap[size] = item;
+            positions.put(item, size);
+            size++;
+        }
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    // Adds element; returns false if it is already in the heap
+    public boolean insert(E element) {
+        if (element == null) throw new NullPointerException("IndexedMaxHeap does not allow null elements");
+        if (positions.containsKey(element)) return false;
+        if (size == heap.length) {
+            Object[] bigger = new Object[heap.length * 2];
+            System.arraycopy(heap, 0, bigger, 0, size);
+            heap = bigger;
+        }
+        heap[size] = element;
+        positions.put(element, size);
+        siftUp(size++);
+        return true;
+    }
+
+    // Largest element, or null if empty
+    public E peek() {
+        return size == 0 ? null : element(0);
+    }
+
+    // Removes and returns the largest element, or null if empty
+    public E poll() {
+        if (size == 0) return null;
+        E top = element(0);
+        removeAt(0);
+        return top;
+    }
+
+    public boolean remove(E element) {
+        Integer index = element == null ? null : positions.get(element);
+        if (index == null) return false;
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Call after element's key has grown (it can only move towards the root).
+     * Throws NoSuchElementException if the element is not in the heap.
+     */
+    public void increaseKey(E element) {
+        siftUp(indexOf(element));
+    }
+
+    // Call after element's key has shrunk (it can only move towards the leaves)
+    public void decreaseKey(E element) {
+        siftDown(indexOf(element));
+    }
+
+    // Call after element's key changed in either direction
+    public void update(E element) {
+        int index = indexOf(element);
+        if (siftUp(index) == index) siftDown(index);
+    }
+
+    /**
+     * Returns up to n largest elements, largest first. The heap is not modified.
+     * Only slots reachable from the root through the already chosen ones are compared,
+     * so the cost depends on n, not on the heap size.
+     */
+    public List<E> topN(int n) {
+        int limit = Math.min(n, size);
+        List<E> result = new ArrayList<>(Math.max(limit, 0));
+        if (limit <= 0) return result;
+
+        // Frontier: a max-heap of heap slots ordered by their elements
+        int[] frontier = new int[limit + 1];
+        int frontierSize = 0;
+        frontier[frontierSize++] = 0;
+        while (result.size() < limit) {
+            int slot = frontier[0];
+            result.add(element(slot));
+            frontier[0] = frontier[--frontierSize];
+            frontierDown(frontier, frontierSize, 0);
+            for (int child = 2 * slot + 1; child <= 2 * slot + 2 && child < size; child++) {
+                frontier[frontierSize] = child;
+                frontierUp(frontier, frontierSize++);
+            }
+        }
+        return result;
+    }
+
+    // ========== HELPERS ==========
+
+    @SuppressWarnings("unchecked")
+    private E element(int index) {
+        return (E) heap[index];
+    }
+
+    private int indexOf(E element) {
+        Integer index = element == null ? null : positions.get(element);
+        if (index == null) throw new NoSuchElementException("Element is not in the heap");
+        return index;
+    }
+
+    private void removeAt(int index) {
+        E removed = element(index);
+        positions.remove(removed);
+        int last = --size;
+        if (index != last) {
+            E moved = element(last);
+            heap[index] = moved;
+            positions.put(moved, index);
+            heap[last] = null;
+            if (siftUp(index) == index) siftDown(index);
+        } else {
+            heap[last] = null;
+        }
+    }
+
+    // Moves the element at index up while it beats its parent; returns its final slot
+    private int siftUp(int index) {
+        E element = element(index);
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            E above = element(parent);
+            if (comparator.compare(element, above) <= 0) break;
+            heap[index] = above;
+            positions.put(above, index);
+            index = parent;
+        }
+        heap[index] = element;
+        positions.put(element, index);
+        return index;
+    }
+
+    private void siftDown(int index) {
+        E element = element(index);
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && comparator.compare(element(right), element(child)) > 0) child = right;
+            E below = element(child);
+            if (comparator.compare(element, below) >= 0) break;
+            heap[index] = below;
+            positions.put(below, index);
+            index = child;
+        }
+        heap[index] = element;
+        positions.put(element, index);
+    }
+
+    private void frontierUp(int[] frontier, int index) {
+        int slot = frontier[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (comparator.compare(element(slot), element(frontier[parent])) <= 0) break;
+            frontier[index] = frontier[parent];
+            index = parent;
+        }
+        frontier[index] = slot;
+    }
+
+    private void frontierDown(int[] frontier, int frontierSize, int index) {
+        if (frontierSize == 0) return;
+        int slot = frontier[index];
+        int half = frontierSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < frontierSize && comparator.compare(element(frontier[right]), element(frontier[child])) > 0) {
+                child = right;
+            }
+            if (comparator.compare(element(slot), element(frontier[child])) >= 0) break;
+            frontier[index] = frontier[child];
+            index = child;
+        }
+        frontier[index] = slot;
+    }
+}
@@ -0,0 +1,61 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * IntList - growable list of ints in insertion order.
+ *
+ * Holds dictionary keys (see IdDictionary) without boxing them: one int per entry
+ * instead of a node and a String reference. indexOf and remove scan the list, which
+ * is fine for the short per-member lists it is used for.
+ *
+ * Not thread-safe.
+ */
+public class IntList {
+
+    private int[] items;
+    private int size;
+
+    public IntList() {
+        this(4);
+    }
+
+    public IntList(int initialCapacity) {
+        items = new int[Math.max(initialCapacity, 1)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Invalid index: " + index);
+        return items[index];
+    }
+
+    public void add(int value) {
+        if (size == items.length) items = Arrays.copyOf(items, size * 2);
+        items[size++] = value;
+    }
+
+    // Position of the first occurrence of value, or -1
+    public int indexOf(int value) {
+        for (int i = 0; i < size; i++) {
+            if (items[i] == value) return i;
+        }
+        return -1;
+    }
+
+    // Removes the first occurrence of value; false if it is not in the list
+    public boolean remove(int value) {
+        int at = indexOf(value);
+        if (at < 0) return false;
+        System.arraycopy(items, at + 1, items, at, size - at - 1);
+        size--;
+        return true;
+    }
+}
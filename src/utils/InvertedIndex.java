@@ -0,0 +1,101 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * InvertedIndex - maps normalized tokens to sorted posting lists of int document ids.
+ *
+ * The caller numbers its documents (dense ints) and hands in each document's text;
+ * tokenize() lowercases it and splits on anything that is not a letter or digit.
+ * search(tokens) intersects the PostingLists of all tokens, starting from the
+ * shortest and binary-searching the others, so a query costs about
+ * (shortest list) x log(longer lists) no matter how many documents are indexed.
+ *
+ * The index remembers each document's tokens, so update() and remove() only need
+ * the document id.
+ *
+ * Not thread-safe: callers that share an index between threads must lock around it.
+ */
+public class InvertedIndex {
+
+    private static final String[] NO_TOKENS = new String[0];
+
+    private final HashMap_Imp<String, PostingList> postings = new HashMap_Imp<>();
+    private String[][] docTokens = new String[64][]; // tokens each document was indexed under
+
+    // Indexes doc under tokens (replacing what it had before)
+    public void update(int doc, String[] tokens) {
+        remove(doc);
+        if (doc >= docTokens.length) docTokens = Arrays.copyOf(docTokens, Math.max(doc + 1, docTokens.length * 2));
+        docTokens[doc] = tokens;
+        for (String token : tokens) {
+            PostingList list = postings.get(token);
+            if (list == null) {
+                list = new PostingList();
+                postings.put(token, list);
+            }
+            list.add(doc);
+        }
+    }
+
+    public void remove(int doc) {
+        if (doc < 0 || doc >= docTokens.length || docTokens[doc] == null) return;
+        for (String token : docTokens[doc]) {
+            PostingList list = postings.get(token);
+            if (list == null) continue;
+            list.remove(doc);
+            if (list.size() == 0) postings.remove(token);
+        }
+        docTokens[doc] = null;
+    }
+
+    public void clear() {
+        for (int doc = 0; doc < docTokens.length; doc++) remove(doc);
+    }
+
+    // Number of documents indexed under token
+    public int count(String token) {
+        PostingList list = postings.get(token);
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * Doc ids (ascending) indexed under every one of tokens. An empty token array
+     * matches nothing.
+     */
+    public int[] search(String[] tokens) {
+        if (tokens.length == 0) return new int[0];
+        PostingList[] lists = new PostingList[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            lists[i] = postings.get(tokens[i]);
+            if (lists[i] == null) return new int[0];
+        }
+        return PostingList.intersect(lists);
+    }
+
+    /**
+     * Lowercased, distinct letter/digit runs of the given texts (nulls are skipped),
+     * in order of first appearance.
+     */
+    public static String[] tokenize(String... texts) {
+        List<String> tokens = null;
+        for (String text : texts) {
+            if (text == null) continue;
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+                if (word && start < 0) {
+                    start = i;
+                } else if (!word && start >= 0) {
+                    String token = text.substring(start, i).toLowerCase();
+                    if (tokens == null) tokens = new ArrayList<>();
+                    if (!tokens.contains(token)) tokens.add(token);
+                    start = -1;
+                }
+            }
+        }
+        return tokens == null ? NO_TOKENS : tokens.toArray(NO_TOKENS);
+    }
+}
@@ -0,0 +1,187 @@
+package utils;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * LineTokenizer - reusable tokenizer for the comma/colon/semicolon text formats.
+ *
+ * reset(line) copies the line into an internal char buffer; next(delimiter) then walks
+ * it once, one field at a time, without creating String[] arrays or substrings.
+ * Numbers and dates are parsed straight from the buffer, and a String is only built
+ * when the caller asks for fieldString().
+ *
+ * A field may be wrapped in double quotes so it can contain , : ; [ ] characters;
+ * a quote inside a quoted field is written twice (""). quote() produces that form
+ * and leaves plain values untouched, so old unquoted files still read the same.
+ *
+ * Not thread-safe: use one tokenizer per thread.
+ */
+public class LineTokenizer {
+
+    private static final String SPECIAL = ",:;[]\"";
+
+    private char[] line = new char[256];
+    private int length;
+    private int pos;
+
+    private char[] field = new char[64];
+    private int fieldLength;
+    private char lastDelimiter; // delimiter that ended the last field, 0 at end of line
+
+    // Loads a new line (trailing padding/whitespace is ignored)
+    public void reset(String text) {
+        int n = text.length();
+        while (n > 0 && text.charAt(n - 1) <= ' ') n--;
+        if (n > line.length) {
+            line = new char[Math.max(n, line.length * 2)];
+        }
+        text.getChars(0, n, line, 0);
+        length = n;
+        pos = 0;
+        fieldLength = 0;
+        lastDelimiter = 0;
+    }
+
+    // True while there is at least one more (possibly empty) field to read
+    public boolean hasMore() {
+        return pos <= length;
+    }
+
+    public boolean next(char delimiter) {
+        return next(delimiter, delimiter);
+    }
+
+    /**
+     * Reads the next field, up to either delimiter or the end of the line, and
+     * consumes the delimiter. Returns false if the line is used up.
+     */
+    public boolean next(char delimiter, char altDelimiter) {
+        if (pos > length) return false;
+        fieldLength = 0;
+        lastDelimiter = 0;
+        boolean quoted = pos < length && line[pos] == '"';
+        if (quoted) pos++;
+        while (pos < length) {
+            char c = line[pos];
+            if (quoted) {
+                if (c == '"') {
+                    if (pos + 1 < length && line[pos + 1] == '"') {
+                        append('"'); // escaped quote
+                        pos += 2;
+                        continue;
+                    }
+                    quoted = false; // closing quote
+                    pos++;
+                    continue;
+                }
+                append(c);
+                pos++;
+            } else if (c == delimiter || c == altDelimiter) {
+                lastDelimiter = c;
+                pos++;
+                return true;
+            } else {
+                append(c);
+                pos++;
+            }
+        }
+        pos = length + 1; // end of line reached
+        return true;
+    }
+
+    // Consumes c if it is the next character
+    public boolean skip(char c) {
+        if (pos < length && line[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    public char lastDelimiter() {
+        return lastDelimiter;
+    }
+
+    public int fieldLength() {
+        return fieldLength;
+    }
+
+    public String fieldString() {
+        return new String(field, 0, fieldLength);
+    }
+
+    public boolean fieldEquals(String s) {
+        if (s.length() != fieldLength) return false;
+        for (int i = 0; i < fieldLength; i++) {
+            if (field[i] != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public int fieldInt() {
+        if (fieldLength == 0) throw new NumberFormatException("empty number");
+        int i = 0;
+        boolean negative = field[0] == '-';
+        if (negative) i++;
+        if (i == fieldLength) throw new NumberFormatException("For input string: \"" + fieldString() + "\"");
+        // Accumulated as a negative number (like Integer.parseInt) so MIN_VALUE still fits
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int value = 0;
+        for (; i < fieldLength; i++) {
+            int digit = field[i] - '0';
+            if (digit < 0 || digit > 9 || value < limit / 10 || value * 10 < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + fieldString() + "\"");
+            }
+            value = value * 10 - digit;
+        }
+        return negative ? value : -value;
+    }
+
+    // Parses yyyy-MM-dd without going through a String
+    public LocalDate fieldDate() {
+        if (fieldLength != 10 || field[4] != '-' || field[7] != '-') {
+            return LocalDate.parse(fieldString());
+        }
+        return LocalDate.of(digits(0, 4), digits(5, 7), digits(8, 10));
+    }
+
+    private int digits(int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = field[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new DateTimeParseException("Text '" + fieldString() + "' could not be parsed at index " + i,
+                        fieldString(), i);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private void append(char c) {
+        if (fieldLength == field.length) {
+            char[] bigger = new char[field.length * 2];
+            System.arraycopy(field, 0, bigger, 0, fieldLength);
+            field = bigger;
+        }
+        field[fieldLength++] = c;
+    }
+
+    // ========== WRITING ==========
+
+    /**
+     * Returns the value ready to be written as a field: unchanged if it has no
+     * special characters, otherwise wrapped in quotes with inner quotes doubled.
+     */
+    public static String quote(String value) {
+        if (value == null) return "";
+        boolean needsQuotes = !value.isEmpty()
+                && (value.charAt(0) <= ' ' || value.charAt(value.length() - 1) <= ' ');
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            needsQuotes = SPECIAL.indexOf(value.charAt(i)) >= 0;
+        }
+        if (!needsQuotes) return value;
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
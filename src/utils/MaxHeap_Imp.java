@@ -1,18 +1,18 @@
 package utils;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 public class MaxHeap_Imp<E extends Comparable<E>> implements MaxHeapBookADT<E> {
-    private LinkedList<E> heap;
+    private ArrayList<E> heap; // array-backed so get/set in bubbleDown are O(1)
 
     public MaxHeap_Imp() {
-        heap = new LinkedList<>();
+        heap = new ArrayList<>();
     }
 
     @Override
     public void buildHeap(List<E> items) {
-        heap = new LinkedList<>(items);
+        heap = new ArrayList<>(items);
         for (int i = (heap.size() / 2) - 1; i >= 0; i--) {
             bubbleDown(i);
         }
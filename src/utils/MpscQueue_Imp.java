@@ -0,0 +1,86 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * MpscQueue_Imp - lock-free multi-producer / single-consumer FIFO queue.
+ *
+ * Any number of threads may enqueue() at the same time; only one thread (the
+ * consumer) may call dequeue(), peek(), isEmpty() and drain(). Built for handing
+ * requests from several terminals to one writer thread without a lock.
+ *
+ * It is a linked list with a dummy head node. A producer swaps itself in as the new
+ * tail with one atomic getAndSet and then links the old tail to it, so enqueue never
+ * retries or blocks. The consumer owns the head and just follows next links. Between
+ * a producer's swap and its link the new node is not visible yet; the consumer then
+ * sees the queue as empty for that instant, and the node shows up on the next call.
+ */
+public class MpscQueue_Imp<T> implements Queue_Int<T> {
+
+    private static final class Node<T> {
+        T item;
+        volatile Node<T> next;
+
+        Node(T item) {
+            this.item = item;
+        }
+    }
+
+    private final AtomicReference<Node<T>> tail;
+    private Node<T> head; // consumer only; head.item is always null
+
+    public MpscQueue_Imp() {
+        Node<T> dummy = new Node<>(null);
+        head = dummy;
+        tail = new AtomicReference<>(dummy);
+    }
+
+    // ========== PRODUCERS (any thread) ==========
+
+    @Override
+    public void enqueue(T item) {
+        if (item == null) throw new NullPointerException("MpscQueue_Imp does not allow null items");
+        Node<T> node = new Node<>(item);
+        Node<T> previous = tail.getAndSet(node);
+        previous.next = node; // publishes the node to the consumer
+    }
+
+    // ========== CONSUMER (one thread) ==========
+
+    @Override
+    public T dequeue() {
+        Node<T> next = head.next;
+        if (next == null) return null;
+        T item = next.item;
+        next.item = null; // next becomes the new dummy head
+        head = next;
+        return item;
+    }
+
+    @Override
+    public T peek() {
+        Node<T> next = head.next;
+        return next == null ? null : next.item;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+
+    /**
+     * Dequeues up to max items in order and hands each to action.
+     * Returns how many were drained.
+     */
+    public int drain(Consumer<? super T> action, int max) {
+        int count = 0;
+        while (count < max) {
+            T item = dequeue();
+            if (item == null) break;
+            action.accept(item);
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,96 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * PostingList - sorted, duplicate-free list of int document ids.
+ *
+ * Appending a larger id (the usual case, since ids are handed out in order) is
+ * amortized O(1); other inserts and removals shift the tail. intersect() and union()
+ * combine several lists into a sorted int[].
+ *
+ * Not thread-safe.
+ */
+public class PostingList {
+
+    private int[] docs = new int[4];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public int get(int index) {
+        return docs[index];
+    }
+
+    public void add(int doc) {
+        if (size > 0 && docs[size - 1] >= doc) {
+            int at = Arrays.binarySearch(docs, 0, size, doc);
+            if (at >= 0) return;
+            insertAt(-at - 1, doc);
+        } else {
+            insertAt(size, doc);
+        }
+    }
+
+    public void remove(int doc) {
+        int at = Arrays.binarySearch(docs, 0, size, doc);
+        if (at < 0) return;
+        System.arraycopy(docs, at + 1, docs, at, size - at - 1);
+        size--;
+    }
+
+    private void insertAt(int index, int doc) {
+        if (size == docs.length) docs = Arrays.copyOf(docs, size * 2);
+        System.arraycopy(docs, index, docs, index + 1, size - index);
+        docs[index] = doc;
+        size++;
+    }
+
+    /**
+     * Ids present in every list, ascending. Walks the shortest list and binary-searches
+     * the others from where the previous match left off.
+     */
+    public static int[] intersect(PostingList[] lists) {
+        if (lists.length == 0) return new int[0];
+        lists = lists.clone();
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        PostingList shortest = lists[0];
+        int[] result = new int[shortest.size];
+        int count = 0;
+        int[] from = new int[lists.length];
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            int doc = shortest.docs[i];
+            for (int l = 1; l < lists.length; l++) {
+                int at = Arrays.binarySearch(lists[l].docs, from[l], lists[l].size, doc);
+                if (at < 0) {
+                    from[l] = -at - 1;
+                    continue candidates;
+                }
+                from[l] = at + 1;
+            }
+            result[count++] = doc;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Ids present in any of the lists, ascending and without duplicates
+    public static int[] union(Iterable<PostingList> lists) {
+        int total = 0;
+        for (PostingList list : lists) total += list.size;
+        int[] all = new int[total];
+        int count = 0;
+        for (PostingList list : lists) {
+            System.arraycopy(list.docs, 0, all, count, list.size);
+            count += list.size;
+        }
+        Arrays.sort(all);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || all[unique - 1] != all[i]) all[unique++] = all[i];
+        }
+        return Arrays.copyOf(all, unique);
+    }
+}
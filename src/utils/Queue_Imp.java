@@ -1,89 +1,285 @@
 package utils;
 
-public class Queue_Imp<T> {
-    private Node<T> front;
-    private Node<T> rear;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Queue_Imp - FIFO queue on a growable ring buffer.
+ *
+ * size(), peek(), get(i) and enqueue/dequeue are O(1) (enqueue amortized), and the
+ * iterator walks the queue without dequeuing anything.
+ *
+ * Every element gets a sequence number when it is enqueued; enqueueWithHandle()
+ * returns it as a handle for remove(handle). Removing marks the slot as a tombstone
+ * instead of shifting the rest of the queue: the handle usually points straight at its
+ * slot (O(1)), and after tombstones have been compacted away it is found by a binary
+ * search over the (ordered) sequence numbers, O(log n). Tombstones are skipped by
+ * dequeue and the iterator, and compacted once they outnumber the live elements (or
+ * make up half of a full buffer, otherwise the buffer grows), so removal and enqueue
+ * stay amortized O(1). get(i) compacts first if there are pending tombstones.
+ */
+public class Queue_Imp<T> implements Queue_Int<T>, Iterable<T> {
+
+    private static final Object REMOVED = new Object();
+
+    private Object[] elements;
+    private long[] seqs;   // sequence number (handle) of each slot
+    private int mask;
+    private int head = 0;  // slot of the front element (always live when not empty)
+    private int count = 0; // occupied slots, tombstones included
+    private int live = 0;  // elements actually in the queue
+    private int removed = 0;
+    private long nextSeq = 0;
+    private int modCount = 0;
 
     public Queue_Imp() {
-        front = rear = null;
+        this(8);
+    }
+
+    public Queue_Imp(int initialCapacity) {
+        int capacity = 8;
+        while (capacity < initialCapacity) capacity <<= 1;
+        elements = new Object[capacity];
+        seqs = new long[capacity];
+        mask = capacity - 1;
     }
 
+    @Override
     public void enqueue(T data) {
-        Node<T> newNode = new Node<>(data);
-        if (rear == null) {
-            front = rear = newNode;
-        } else {
-            rear.next = newNode;
-            rear = newNode;
+        enqueueWithHandle(data);
+    }
+
+    // Enqueues and returns a handle that remove(handle) accepts
+    public long enqueueWithHandle(T data) {
+        if (count == elements.length) {
+            // Compacting only pays off when it frees at least half the buffer; with a few
+            // tombstones it would run again on the next cycle, O(n) each time
+            if (removed >= count / 2) compact();
+            else grow();
         }
+        int slot = (head + count) & mask;
+        elements[slot] = data;
+        seqs[slot] = nextSeq;
+        count++;
+        live++;
+        modCount++;
+        return nextSeq++;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
     public T dequeue() {
-        if (isEmpty()) return null;
-        T data = front.data;
-        front = front.next;
-        if (front == null) rear = null;
+        if (live == 0) return null;
+        T data = (T) elements[head];
+        elements[head] = null;
+        head = (head + 1) & mask;
+        count--;
+        live--;
+        modCount++;
+        skipRemovedAtHead();
         return data;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        return live == 0 ? null : (T) elements[head];
+    }
+
+    // Handle of the front element, or -1 if empty
+    public long peekHandle() {
+        return live == 0 ? -1 : seqs[head];
+    }
+
+    @Override
     public boolean isEmpty() {
-        return front == null;
+        return live == 0;
     }
 
-    // ✅ Add these
     public int size() {
-        int count = 0;
-        Node<T> current = front;
-        while (current != null) {
-            count++;
-            current = current.next;
-        }
-        return count;
+        return live;
     }
 
+    @SuppressWarnings("unchecked")
     public T get(int index) {
-        if (index < 0 || index >= size()) {
+        if (index < 0 || index >= live) {
             throw new IndexOutOfBoundsException("Invalid index: " + index);
         }
-        Node<T> current = front;
-        for (int i = 0; i < index; i++) {
-            current = current.next;
+        if (removed > 0) compact();
+        return (T) elements[(head + index) & mask];
+    }
+
+    // ========== REMOVAL ==========
+
+    // Removes the element enqueued with this handle; false if it is no longer queued
+    public boolean remove(long handle) {
+        int slot = locate(handle);
+        if (slot < 0) return false;
+        removeSlot(slot);
+        return true;
+    }
+
+    public boolean removeItem(T data) {
+        for (int i = 0; i < count; i++) {
+            int slot = (head + i) & mask;
+            Object e = elements[slot];
+            if (e != REMOVED && e != null && e.equals(data)) {
+                removeSlot(slot);
+                return true;
+            }
         }
-        return current.data;
+        return false; // item not found
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder("[");
-        Node<T> current = front;
-        while (current != null) {
-            sb.append(current.data);
-            if (current.next != null) sb.append(", ");
-            current = current.next;
+    @SuppressWarnings("unchecked")
+    public T removeAt(int index) {
+        if (index < 0 || index >= live) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
         }
-        sb.append("]");
-        return sb.toString();
+        if (removed > 0) compact();
+        int slot = (head + index) & mask;
+        T data = (T) elements[slot];
+        removeSlot(slot);
+        return data;
     }
-    public boolean removeItem(T data) {
-        if (isEmpty()) return false;
 
-        // If front node needs to be removed
-        if (front.data.equals(data)) {
-            front = front.next;
-            if (front == null) rear = null;
-            return true;
+    private void removeSlot(int slot) {
+        elements[slot] = REMOVED;
+        live--;
+        removed++;
+        modCount++;
+        skipRemovedAtHead();
+        // Trailing tombstones can simply be dropped
+        while (count > 0 && elements[(head + count - 1) & mask] == REMOVED) {
+            elements[(head + count - 1) & mask] = null;
+            count--;
+            removed--;
         }
+        if (removed > live && removed > 8) compact();
+    }
 
-        Node<T> current = front;
-        while (current.next != null) {
-            if (current.next.data.equals(data)) {
-                current.next = current.next.next;
-                if (current.next == null) rear = current;
-                return true;
-            }
-            current = current.next;
+    private void skipRemovedAtHead() {
+        while (count > 0 && elements[head] == REMOVED) {
+            elements[head] = null;
+            head = (head + 1) & mask;
+            count--;
+            removed--;
         }
-        return false; // item not found
     }
 
+    // Slot of a live element with this handle, or -1
+    private int locate(long handle) {
+        if (count == 0) return -1;
+        long first = seqs[head];
+        if (handle < first || handle >= nextSeq) return -1;
+        long guess = handle - first;
+        if (guess < count) {
+            int slot = (int) ((head + guess) & mask);
+            if (seqs[slot] == handle) return elements[slot] == REMOVED ? -1 : slot;
+        }
+        // Compacted since: sequence numbers are still in order, so binary search them
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int slot = (head + mid) & mask;
+            long seq = seqs[slot];
+            if (seq < handle) low = mid + 1;
+            else if (seq > handle) high = mid - 1;
+            else return elements[slot] == REMOVED ? -1 : slot;
+        }
+        return -1;
+    }
+
+    // ========== STORAGE ==========
+
+    // Moves live elements together (keeping order and sequence numbers)
+    private void compact() {
+        int write = 0;
+        for (int read = 0; read < count; read++) {
+            int from = (head + read) & mask;
+            Object e = elements[from];
+            if (e == REMOVED) continue;
+            int to = (head + write) & mask;
+            elements[to] = e;
+            seqs[to] = seqs[from];
+            write++;
+        }
+        for (int i = write; i < count; i++) {
+            elements[(head + i) & mask] = null;
+        }
+        count = write;
+        removed = 0;
+    }
+
+    private void grow() {
+        int capacity = elements.length * 2;
+        Object[] grownElements = new Object[capacity];
+        long[] grownSeqs = new long[capacity];
+        for (int i = 0; i < count; i++) {
+            grownElements[i] = elements[(head + i) & mask];
+            grownSeqs[i] = seqs[(head + i) & mask];
+        }
+        elements = grownElements;
+        seqs = grownSeqs;
+        mask = capacity - 1;
+        head = 0;
+    }
+
+    // ========== ITERATION ==========
+
+    // Front to back, without dequeuing; fails fast if the queue changes meanwhile
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final int expectedModCount = modCount;
+            private int position = 0; // physical offset from head
+
+            @Override
+            public boolean hasNext() {
+                while (position < count && elements[(head + position) & mask] == REMOVED) position++;
+                return position < count;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                if (!hasNext()) throw new NoSuchElementException();
+                return (T) elements[(head + position++) & mask];
+            }
+        };
+    }
+
+    // Sized, so parallel streams split it into evenly sized batches
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliterator(iterator(), live, Spliterator.ORDERED);
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        boolean first = true;
+        for (T item : this) {
+            if (!first) sb.append(", ");
+            sb.append(item);
+            first = false;
+        }
+        sb.append("]");
+        return sb.toString();
+    }
 }
@@ -0,0 +1,263 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * RadixTrie - compressed prefix tree with the best k values cached at every node.
+ *
+ * Keys are strings, each edge holds a whole run of characters (chains of single-child
+ * nodes are merged), and a key may map to several values. Every node keeps the top k
+ * values of its subtree ordered by the ranking comparator (greatest first), so
+ * suggest(prefix) is a walk down the prefix plus a copy of at most k values: it does
+ * not depend on how many keys share the prefix.
+ *
+ * An insert can only add its value to the cached lists on its path, which costs O(k)
+ * per node; remove / update rebuild those lists bottom-up from each node's own values
+ * and its children's lists.
+ * A value's rank may change after it is inserted (e.g. a borrow count); call
+ * update(key, value) for each key it is stored under so its ancestors re-rank.
+ * A value stored under several keys that share a prefix is listed once.
+ *
+ * Keys are used as given; callers normalize case. Not thread-safe.
+ */
+public class RadixTrie<V> {
+
+    private static final Object[] NONE = new Object[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private static final class Node {
+        String label;                     // characters on the edge into this node
+        Node[] children = NO_NODES;       // sorted by first character of label
+        Object[] values = NONE;           // values stored under exactly this key
+        Object[] top = NONE;              // best k values of the subtree, greatest first
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private final int k;
+    private final Comparator<? super V> ranking;
+    private final Node root = new Node("");
+    private int size;
+
+    public RadixTrie(int k, Comparator<? super V> ranking) {
+        this.k = k;
+        this.ranking = ranking;
+    }
+
+    // Number of (key, value) pairs
+    public int size() {
+        return size;
+    }
+
+    public void insert(String key, V value) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int pos = 0;
+        path.add(node);
+        while (pos < key.length()) {
+            int index = childIndex(node, key.charAt(pos));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(pos));
+                node.children = insertChild(node.children, -index - 1, leaf);
+                node = leaf;
+                path.add(node);
+                pos = key.length();
+                break;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, key, pos);
+            if (common < child.label.length()) {
+                // Split the edge: parent -> middle (shared part) -> child (rest)
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children = new Node[] { child };
+                middle.top = child.top.clone();
+                node.children[index] = middle;
+                child = middle;
+            }
+            node = child;
+            path.add(node);
+            pos += common;
+        }
+        for (Object v : node.values) {
+            if (v == value) return; // already stored under this key
+        }
+        node.values = Arrays.copyOf(node.values, node.values.length + 1);
+        node.values[node.values.length - 1] = value;
+        size++;
+        for (Node n : path) offer(n, value);
+    }
+
+    // Removes value from key; returns false if it was not stored there
+    public boolean remove(String key, V value) {
+        List<Node> path = find(key);
+        if (path == null) return false;
+        Node node = path.get(path.size() - 1);
+        int at = -1;
+        for (int i = 0; i < node.values.length; i++) {
+            if (node.values[i] == value) at = i;
+        }
+        if (at < 0) return false;
+        Object[] values = new Object[node.values.length - 1];
+        System.arraycopy(node.values, 0, values, 0, at);
+        System.arraycopy(node.values, at + 1, values, at, values.length - at);
+        node.values = values;
+        size--;
+        prune(path);
+        rerank(path);
+        return true;
+    }
+
+    // Re-ranks the nodes above key after value's rank changed
+    public void update(String key, V value) {
+        List<Node> path = find(key);
+        if (path != null) rerank(path);
+    }
+
+    /**
+     * Up to limit (at most k) values stored under keys that start with prefix,
+     * greatest first.
+     */
+    public List<V> suggest(String prefix, int limit) {
+        Node node = root;
+        int pos = 0;
+        while (pos < prefix.length()) {
+            int index = childIndex(node, prefix.charAt(pos));
+            if (index < 0) return new ArrayList<>();
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, prefix, pos);
+            if (common < child.label.length() && pos + common < prefix.length()) return new ArrayList<>();
+            node = child;
+            pos += common;
+        }
+        int n = Math.min(limit, node.top.length);
+        List<V> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) result.add(value(node.top[i]));
+        return result;
+    }
+
+    // ========== HELPERS ==========
+
+    // Nodes from the root to the node for exactly key, or null if key has no node
+    private List<Node> find(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int pos = 0;
+        while (pos < key.length()) {
+            int index = childIndex(node, key.charAt(pos));
+            if (index < 0) return null;
+            node = node.children[index];
+            if (!key.startsWith(node.label, pos)) return null;
+            path.add(node);
+            pos += node.label.length();
+        }
+        return path;
+    }
+
+    // Drops empty leaves and merges single-child nodes left behind by a removal
+    private void prune(List<Node> path) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node node = path.get(i);
+            Node parent = path.get(i - 1);
+            if (node.values.length > 0) return;
+            if (node.children.length == 0) {
+                parent.children = removeChild(parent.children, node);
+                path.remove(i);
+            } else if (node.children.length == 1) {
+                Node only = node.children[0];
+                only.label = node.label + only.label;
+                parent.children[indexOf(parent.children, node)] = only;
+                path.remove(i);
+                return;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // Puts value into node's cached list if it ranks among the best k
+    private void offer(Node node, V value) {
+        if (indexOf(node.top, value) >= 0) return;
+        int at = node.top.length;
+        while (at > 0 && ranking.compare(value, value(node.top[at - 1])) > 0) at--;
+        if (at >= k) return;
+        Object[] top = Arrays.copyOf(node.top, Math.min(k, node.top.length + 1));
+        System.arraycopy(node.top, at, top, at + 1, top.length - at - 1);
+        top[at] = value;
+        node.top = top;
+    }
+
+    // Recomputes the cached top lists from the deepest node of path up to the root
+    private void rerank(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            TopK<V> best = new TopK<>(k, ranking);
+            Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Object v : node.values) {
+                if (seen.add(v)) best.offer(value(v));
+            }
+            for (Node child : node.children) {
+                for (Object v : child.top) {
+                    if (seen.add(v)) best.offer(value(v));
+                }
+            }
+            node.top = best.toList().toArray();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(Object o) {
+        return (V) o;
+    }
+
+    private static int commonPrefix(String label, String key, int from) {
+        int n = Math.min(label.length(), key.length() - from);
+        int i = 0;
+        while (i < n && label.charAt(i) == key.charAt(from + i)) i++;
+        return i;
+    }
+
+    // Binary search by first character; -(insertion point) - 1 if absent
+    private static int childIndex(Node node, char c) {
+        int lo = 0;
+        int hi = node.children.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = node.children[mid].label.charAt(0);
+            if (m < c) lo = mid + 1;
+            else if (m > c) hi = mid - 1;
+            else return mid;
+        }
+        return -lo - 1;
+    }
+
+    private static Node[] insertChild(Node[] children, int at, Node child) {
+        Node[] grown = Arrays.copyOf(children, children.length + 1);
+        System.arraycopy(children, at, grown, at + 1, children.length - at);
+        grown[at] = child;
+        return grown;
+    }
+
+    private static Node[] removeChild(Node[] children, Node child) {
+        int at = indexOf(children, child);
+        Node[] shrunk = Arrays.copyOf(children, children.length - 1);
+        System.arraycopy(children, at + 1, shrunk, at, children.length - at - 1);
+        return shrunk;
+    }
+
+    private static int indexOf(Object[] array, Object o) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == o) return i;
+        }
+        return -1;
+    }
+}
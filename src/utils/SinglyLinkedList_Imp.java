@@ -1,9 +1,19 @@
 package utils;
 
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 public class SinglyLinkedList_Imp<Z> implements SinglyLinkedList_Int<Z> {
 	private Node<Z> head; //attributes that describe what nodes contain and how many
 	private Node<Z> tail;
 	private int size;
+	private int modCount; //bumped on every add/remove so iterators can fail fast
 	
 	public SinglyLinkedList_Imp() { //
 		head = null;
@@ -24,6 +34,7 @@ public class SinglyLinkedList_Imp<Z> implements SinglyLinkedList_Int<Z> {
 		head = null;
 		tail = null;
 		size = 0;
+		modCount++;
 	}
 	
 	public void addFirst(Z item) { 
@@ -36,6 +47,7 @@ public class SinglyLinkedList_Imp<Z> implements SinglyLinkedList_Int<Z> {
 			head = newNode; //the added node becomes the new head
 		}
 		size++;
+		modCount++;
 	}
 	
 	public void addLast(Z item) {
@@ -48,6 +60,7 @@ public class SinglyLinkedList_Imp<Z> implements SinglyLinkedList_Int<Z> {
 			tail = newNode; //added node becomes the new tail node
 		}
 		size++;
+		modCount++;
 	}
 	
 	public void add(int index, Z item) {
@@ -76,6 +89,7 @@ public class SinglyLinkedList_Imp<Z> implements SinglyLinkedList_Int<Z> {
 		current.next = newNode;
 		
 		size++;
+		modCount++;
 	}
 	
 	public Z removeFirst() {
@@ -93,6 +107,7 @@ public class SinglyLinkedList_Imp<Z> implements SinglyLinkedList_Int<Z> {
 		}
 		
 		size--;
+		modCount++;
 		
 		return removedData;
 	}
@@ -117,6 +132,7 @@ public class SinglyLinkedList_Imp<Z> implements SinglyLinkedList_Int<Z> {
 		}
 		
 		size--;
+		modCount++;
 		return removedData;
 	}
 
@@ -136,6 +152,7 @@ public class SinglyLinkedList_Imp<Z> implements SinglyLinkedList_Int<Z> {
 		Z removedData = current.next.data;
 		current.next = current.next.next;
 		size--;
+		modCount++;
 		return removedData;
 	}
 
@@ -156,6 +173,7 @@ public class SinglyLinkedList_Imp<Z> implements SinglyLinkedList_Int<Z> {
 				}
 				current.next = current.next.next;
 				size--;
+				modCount++;
 				return true;
 			}
 			current = current.next;
@@ -212,6 +230,118 @@ public class SinglyLinkedList_Imp<Z> implements SinglyLinkedList_Int<Z> {
 		sb.append("]");
 		return sb.toString();
 	}
+
+	// ========== ITERATION ==========
+
+	//walks head to tail in O(n) total; throws if the list is changed meanwhile
+	@Override
+	public Iterator<Z> iterator() {
+		return new Iterator<Z>() {
+			private Node<Z> current = head;
+			private final int expectedModCount = modCount;
+
+			@Override
+			public boolean hasNext() {
+				return current != null;
+			}
+
+			@Override
+			public Z next() {
+				if (modCount != expectedModCount) throw new ConcurrentModificationException();
+				if (current == null) throw new NoSuchElementException();
+				Z data = current.data;
+				current = current.next;
+				return data;
+			}
+		};
+	}
+
+	@Override
+	public Spliterator<Z> spliterator() {
+		return new LinkedSpliterator(head, size);
+	}
+
+	public Stream<Z> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	public Stream<Z> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	/**
+	 * A linked list cannot be cut in the middle without walking to it, so trySplit()
+	 * copies the next batch of nodes into an array and hands that off as the prefix.
+	 * Batches grow by BATCH_UNIT each split, so a parallel stream gets work out quickly
+	 * on small lists and in few large pieces on big ones.
+	 */
+	private final class LinkedSpliterator implements Spliterator<Z> {
+		private static final int BATCH_UNIT = 1 << 10;
+		private static final int MAX_BATCH = 1 << 20;
+
+		private Node<Z> current;
+		private int remaining;
+		private int batch = 0;
+		private final int expectedModCount = modCount;
+
+		LinkedSpliterator(Node<Z> start, int count) {
+			this.current = start;
+			this.remaining = count;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Z> action) {
+			if (remaining <= 0) return false;
+			Z data = current.data;
+			current = current.next;
+			remaining--;
+			action.accept(data);
+			checkForComodification();
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super Z> action) {
+			Node<Z> node = current;
+			int n = remaining;
+			current = null;
+			remaining = 0;
+			for (; n > 0 && node != null; n--, node = node.next) {
+				action.accept(node.data);
+			}
+			checkForComodification();
+		}
+
+		@Override
+		public Spliterator<Z> trySplit() {
+			if (remaining <= 1) return null;
+			int n = Math.min(Math.min(batch + BATCH_UNIT, MAX_BATCH), remaining);
+			if (n == remaining) n = remaining / 2; //leave some work for this half
+			Object[] prefix = new Object[n];
+			for (int i = 0; i < n; i++) {
+				prefix[i] = current.data;
+				current = current.next;
+			}
+			remaining -= n;
+			batch = n;
+			checkForComodification();
+			return Spliterators.spliterator(prefix, 0, n, Spliterator.ORDERED);
+		}
+
+		@Override
+		public long estimateSize() {
+			return remaining;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+		}
+
+		private void checkForComodification() {
+			if (modCount != expectedModCount) throw new ConcurrentModificationException();
+		}
+	}
 	
 }
 
@@ -1,6 +1,6 @@
 package utils;
 
-public interface SinglyLinkedList_Int <Z> {
+public interface SinglyLinkedList_Int <Z> extends Iterable<Z> {
 	
 	int size();
 	
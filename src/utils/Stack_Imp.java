@@ -1,8 +1,14 @@
 package utils;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class Stack_Imp<E> implements Stack_Int<E> {
+public class Stack_Imp<E> implements Stack_Int<E>, Iterable<E> {
 	
 private List<E> data = new ArrayList<>();
 	
@@ -28,6 +34,36 @@ private List<E> data = new ArrayList<>();
 		return data.size() == 0;
 	}
 	
+	public int size() {
+		return data.size();
+	}
+	
+	// top to bottom (the order pop() would return them); fails fast like the backing list
+	public Iterator<E> iterator() {
+		ListIterator<E> it = data.listIterator(data.size());
+		return new Iterator<E>() {
+			public boolean hasNext() {
+				return it.hasPrevious();
+			}
+			
+			public E next() {
+				return it.previous();
+			}
+		};
+	}
+	
+	public Spliterator<E> spliterator() {
+		return Spliterators.spliterator(iterator(), data.size(), Spliterator.ORDERED);
+	}
+	
+	public Stream<E> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+	
+	public Stream<E> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+	
 	public String toString() {
 	    return data.toString();
 	}
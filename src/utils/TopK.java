@@ -0,0 +1,117 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collector;
+
+/**
+ * TopK - keeps the k largest items seen so far, by any comparator.
+ *
+ * Items are offered one at a time into a bounded min-heap of size k whose root is the
+ * smallest item kept. A new item only gets in if it beats the root, so a pass over N
+ * items costs O(N log k) time and O(k) memory, whatever N is.
+ *
+ * Partial results can be merged (e.g. one TopK per partition of a parallel stream);
+ * collector(k, comparator) packages that as a Collector whose combiner does the merge.
+ * When items compare equal, the one offered first is kept.
+ *
+ * Not thread-safe: each thread fills its own TopK and the results are merged.
+ */
+public class TopK<T> {
+
+    private final int k;
+    private final Comparator<? super T> comparator;
+    private final Object[] heap; // min-heap by comparator: heap[0] is the weakest item kept
+    private int size;
+
+    public TopK(int k, Comparator<? super T> comparator) {
+        if (k < 0) throw new IllegalArgumentException("k must not be negative: " + k);
+        this.k = k;
+        this.comparator = comparator;
+        this.heap = new Object[k];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Keeps item if it is among the k largest so far; returns true if it was kept
+    public boolean offer(T item) {
+        if (size < k) {
+            heap[size] = item;
+            siftUp(size++);
+            return true;
+        }
+        if (k == 0 || comparator.compare(item, element(0)) <= 0) return false;
+        heap[0] = item;
+        siftDown(0);
+        return true;
+    }
+
+    // Adds the items kept by other into this one and returns this
+    public TopK<T> merge(TopK<? extends T> other) {
+        for (int i = 0; i < other.size; i++) {
+            @SuppressWarnings("unchecked")
+            T item = (T) other.heap[i];
+            offer(item);
+        }
+        return this;
+    }
+
+    // The kept items, largest first (O(k log k); the TopK is unchanged)
+    public List<T> toList() {
+        List<T> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) result.add(element(i));
+        result.sort(Collections.reverseOrder(comparator));
+        return result;
+    }
+
+    /**
+     * Collector returning the k largest stream elements, largest first.
+     * Works on parallel streams: every partition keeps its own k and the combiner
+     * merges them.
+     */
+    public static <T> Collector<T, ?, List<T>> collector(int k, Comparator<? super T> comparator) {
+        return Collector.of(
+                () -> new TopK<T>(k, comparator),
+                TopK::offer,
+                TopK::merge,
+                TopK::toList);
+    }
+
+    // ========== HELPERS ==========
+
+    @SuppressWarnings("unchecked")
+    private T element(int index) {
+        return (T) heap[index];
+    }
+
+    private void siftUp(int index) {
+        T item = element(index);
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            T above = element(parent);
+            if (comparator.compare(item, above) >= 0) break;
+            heap[index] = above;
+            index = parent;
+        }
+        heap[index] = item;
+    }
+
+    private void siftDown(int index) {
+        T item = element(index);
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && comparator.compare(element(right), element(child)) < 0) child = right;
+            T below = element(child);
+            if (comparator.compare(item, below) <= 0) break;
+            heap[index] = below;
+            index = child;
+        }
+        heap[index] = item;
+    }
+}
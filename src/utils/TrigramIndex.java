@@ -0,0 +1,119 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * TrigramIndex - substring search over one text per document, exact and indexed.
+ *
+ * Each document's text is lowercased (String.toLowerCase(), as the old scans did) and
+ * every 3-character window of it is posted under its trigram. search(key) takes the
+ * trigrams of the lowercased key, intersects their PostingLists to get candidates,
+ * and keeps the candidates whose stored text really contains the key. Any text that
+ * contains the key contains all of its trigrams, so the result is exactly
+ * text.toLowerCase().contains(key.toLowerCase()), in ascending document order.
+ *
+ * Keys shorter than 3 characters have no trigram; they fall back to a scan of the
+ * stored texts (still without touching the caller's objects).
+ *
+ * The stored lowercase texts are what make verification and remove() possible
+ * without the caller passing the old text back.
+ *
+ * Not thread-safe: callers that share an index between threads must lock around it.
+ */
+public class TrigramIndex {
+
+    private final HashMap_Imp<Long, PostingList> postings = new HashMap_Imp<>();
+    private String[] texts = new String[64]; // lowercase text per doc, null if not indexed
+    private int indexed;                      // non-null entries of texts
+
+    // Indexes doc's text (replacing what it had before); a null text is not indexed
+    public void update(int doc, String text) {
+        remove(doc);
+        if (text == null) return;
+        if (doc >= texts.length) texts = Arrays.copyOf(texts, Math.max(doc + 1, texts.length * 2));
+        String lower = text.toLowerCase();
+        texts[doc] = lower;
+        indexed++;
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            Long gram = trigram(lower, i);
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                list = new PostingList();
+                postings.put(gram, list);
+            }
+            list.add(doc); // a repeated trigram finds doc already there
+        }
+    }
+
+    public void remove(int doc) {
+        if (doc < 0 || doc >= texts.length || texts[doc] == null) return;
+        String lower = texts[doc];
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            Long gram = trigram(lower, i);
+            PostingList list = postings.get(gram);
+            if (list == null) continue;
+            list.remove(doc);
+            if (list.size() == 0) postings.remove(gram);
+        }
+        texts[doc] = null;
+        indexed--;
+    }
+
+    // The lowercase text doc is indexed under, or null
+    public String text(int doc) {
+        return doc >= 0 && doc < texts.length ? texts[doc] : null;
+    }
+
+    // Doc ids (ascending) whose text contains key, ignoring case
+    public int[] search(String key) {
+        String lower = key.toLowerCase();
+        if (lower.length() < 3) return scan(lower);
+
+        PostingList[] lists = new PostingList[lower.length() - 2];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(trigram(lower, i));
+            if (lists[i] == null) return new int[0];
+        }
+        int[] candidates = PostingList.intersect(lists);
+        if (lower.length() == 3) return candidates; // the trigram is the whole key
+
+        int count = 0;
+        for (int doc : candidates) {
+            if (texts[doc].contains(lower)) candidates[count++] = doc;
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    /**
+     * Upper bound on search(key).length without running it: the shortest posting
+     * list among the key's trigrams, or the number of indexed texts for keys too
+     * short to have one.
+     */
+    public int estimate(String key) {
+        String lower = key.toLowerCase();
+        if (lower.length() < 3) return indexed;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            PostingList list = postings.get(trigram(lower, i));
+            if (list == null) return 0;
+            min = Math.min(min, list.size());
+        }
+        return min;
+    }
+
+    private int[] scan(String lower) {
+        int[] result = new int[16];
+        int count = 0;
+        for (int doc = 0; doc < texts.length; doc++) {
+            if (texts[doc] == null || !texts[doc].contains(lower)) continue;
+            if (count == result.length) result = Arrays.copyOf(result, count * 2);
+            result[count++] = doc;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Three UTF-16 chars packed into one long
+    private static Long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}